@@ -0,0 +1,38 @@
+package benchmarks;
+
+import model.Board;
+import model.Position;
+
+/**
+ * Fixed suite of positions every benchmark runs on, so results stay comparable between runs.
+ * Both the bitboard Position and the object Board are loaded from the same FEN.
+ */
+final class BenchmarkPositions {
+
+    // Italian game after 1. e4 e5 2. Nf3 Nc6
+    static final String OPENING = "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3";
+    // "Kiwipete", a busy middlegame with castling, pins and promotions
+    static final String MIDDLEGAME = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    // Rook and pawn endgame
+    static final String ENDGAME = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+
+    private BenchmarkPositions() {
+    }
+
+    static Position position(String name) {
+        return new Position(fen(name));
+    }
+
+    static Board board(String name) {
+        return new Board(fen(name));
+    }
+
+    private static String fen(String name) {
+        return switch (name) {
+            case "opening" -> OPENING;
+            case "middlegame" -> MIDDLEGAME;
+            case "endgame" -> ENDGAME;
+            default -> throw new IllegalArgumentException("Unknown position " + name);
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package benchmarks;
+
+import controller.AIPlayer;
+import model.Position;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Static evaluation, run once at every leaf of the search.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluateBenchmark {
+
+    @Param({"opening", "middlegame", "endgame"})
+    String name;
+
+    Position position;
+    AIPlayer ai;
+
+    @Setup
+    public void setUp() {
+        position = BenchmarkPositions.position(name);
+        ai = new AIPlayer();
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return ai.evaluate(position);
+    }
+}
@@ -0,0 +1,79 @@
+package benchmarks;
+
+import model.Board;
+import model.Move;
+import model.Piece;
+import model.Position;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays and takes back every legal move of a position, the inner loop of both perft and search.
+ * Scores are per position (all of its moves), not per move.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MakeUndoBenchmark {
+
+    @State(Scope.Thread)
+    public static class BoardState {
+        @Param({"opening", "middlegame", "endgame"})
+        String name;
+        Board board;
+        final List<int[]> moves = new ArrayList<>();
+        final List<Piece> pieces = new ArrayList<>();
+
+        @Setup
+        public void setUp() {
+            board = BenchmarkPositions.board(name);
+            for (Map.Entry<Piece, ArrayList<int[]>> entry : board.getAllPossibleMoves(board.isWhiteToMove()).entrySet()) {
+                for (int[] move : entry.getValue()) {
+                    pieces.add(entry.getKey());
+                    moves.add(move);
+                }
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PositionState {
+        @Param({"opening", "middlegame", "endgame"})
+        String name;
+        Position position;
+        int[] moves;
+
+        @Setup
+        public void setUp() {
+            position = BenchmarkPositions.position(name);
+            moves = position.getAllPossibleMoves();
+        }
+    }
+
+    @Benchmark
+    public long boardMakeUndo(BoardState state) {
+        Board board = state.board;
+        for (int i = 0; i < state.moves.size(); i++) {
+            int[] move = state.moves.get(i);
+            board.movePiece(new Move(state.pieces.get(i), move[0], move[1]));
+            board.undoLastMove();
+        }
+        return board.getZobristKey();
+    }
+
+    @Benchmark
+    public long positionMakeUndo(PositionState state) {
+        Position position = state.position;
+        for (int move : state.moves) {
+            position.movePiece(move);
+            position.undoLastMove();
+        }
+        return position.getZobristKey();
+    }
+}
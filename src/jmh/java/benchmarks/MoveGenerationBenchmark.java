@@ -0,0 +1,66 @@
+package benchmarks;
+
+import model.Board;
+import model.Position;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Legal move generation on the object Board (as used by the GUI) and on the bitboard Position (as used by search).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenerationBenchmark {
+
+    @State(Scope.Thread)
+    public static class BoardState {
+        @Param({"opening", "middlegame", "endgame"})
+        String name;
+        Board board;
+
+        @Setup
+        public void setUp() {
+            board = BenchmarkPositions.board(name);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PositionState {
+        @Param({"opening", "middlegame", "endgame"})
+        String name;
+        Position position;
+        final int[] moves = new int[Position.MAX_MOVES];
+
+        @Setup
+        public void setUp() {
+            position = BenchmarkPositions.position(name);
+        }
+    }
+
+    @Benchmark
+    public Object boardMoves(BoardState state) {
+        return state.board.getAllPossibleMoves(state.board.isWhiteToMove());
+    }
+
+    @Benchmark
+    public int positionMoves(PositionState state) {
+        return state.position.getAllPossibleMoves(state.moves);
+    }
+
+    @Benchmark
+    public void boardInCheck(BoardState state, Blackhole blackhole) {
+        blackhole.consume(state.board.inCheck(true));
+        blackhole.consume(state.board.inCheck(false));
+    }
+
+    @Benchmark
+    public void positionInCheck(PositionState state, Blackhole blackhole) {
+        blackhole.consume(state.position.inCheck(true));
+        blackhole.consume(state.position.inCheck(false));
+    }
+}
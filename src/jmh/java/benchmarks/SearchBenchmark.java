@@ -0,0 +1,50 @@
+package benchmarks;
+
+import controller.Search;
+import controller.TranspositionTable;
+import model.Position;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fixed depth negamax search. The transposition table is cleared and the Search, with its
+ * killer and history tables, replaced before every search so each one starts cold, like the
+ * first search of a game.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+    @Param({"opening", "middlegame", "endgame"})
+    String name;
+
+    @Param({"4"})
+    int depth;
+
+    Position position;
+    TranspositionTable tt;
+    Search search;
+
+    @Setup
+    public void setUp() {
+        position = BenchmarkPositions.position(name);
+        tt = new TranspositionTable(16);
+    }
+
+    @Setup(Level.Invocation)
+    public void newSearch() {
+        tt.clear();
+        search = new Search(tt, new AtomicBoolean());
+    }
+
+    @Benchmark
+    public int negamax() {
+        return search.negamax(position, depth, 0, Search.MIN, Search.MAX);
+    }
+}
@@ -1,10 +1,14 @@
 import model.Board;
 import controller.AIPlayer;
 import controller.HumanPlayer;
+import controller.OpeningBook;
 import controller.Player;
 import model.Move;
 import view.ChessGUI;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 
 public class Main {
     public static void startGame(Player p1, Player p2) {
@@ -20,14 +24,9 @@ public class Main {
         while (true) {
             Move move = currPlayer.decideMove(board);
             if(move==null) {
+                // The window stays open until closed, the game loop has nothing left to wait for
                 System.out.println("~~~~~~~~~~Game over: " + currPlayer.getColor() + " player defeated~~~~~~~~~~~");
-                while (true) {
-                    try {
-                        Thread.sleep(1000);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
+                return;
             }
             currPlayer.update(board, move);
 
@@ -36,9 +35,14 @@ public class Main {
 
     }
 
-    public static void main(String[] args) {
+    // args - optional Polyglot opening book for the computer
+    public static void main(String[] args) throws IOException {
         Player p1 = new HumanPlayer();
-        Player p2 = new AIPlayer();
+        AIPlayer p2 = new AIPlayer();
+        p2.setPonder(true); // think while the user does
+        if (args.length > 0) {
+            p2.setBook(new OpeningBook(Path.of(args[0])));
+        }
 
         startGame(p1, p2);
     }
@@ -2,11 +2,14 @@ package controller;
 
 import model.Board;
 import model.Move;
+import model.PackedMove;
 import model.Piece;
+import model.Position;
 import view.ChessGUI;
 
 import javax.swing.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AIPlayer implements Player {
     ChessGUI gui;
@@ -15,7 +18,19 @@ public class AIPlayer implements Player {
     Move lastMove = null;
 
     public AIPlayer() {
+        this(DEFAULT_HASH_SIZE);
+    }
+
+    // hashSizeMb - memory given to the transposition table
+    public AIPlayer(int hashSizeMb) {
+        this(hashSizeMb, 1);
+    }
+
+    // threads - number of threads searching in parallel
+    public AIPlayer(int hashSizeMb, int threads) {
         this.color = false;
+        this.tt = new TranspositionTable(hashSizeMb);
+        setThreads(threads);
     }
 
     @Override
@@ -23,7 +38,28 @@ public class AIPlayer implements Player {
         this.gui = gui;
     }
 
-    int depth = 3;
+    // Upper bound on how long the computer thinks per move, in milliseconds
+    int thinkTime = 1000;
+
+    public void setThinkTime(int thinkTime) {
+        this.thinkTime = thinkTime;
+    }
+
+    // Forgets the last game (e.g. between games of a match) and plays the given side in the next
+    public void newGame(boolean color) {
+        stopPondering();
+        this.color = color;
+        lastMove = null;
+        inCheck = false;
+        tt.clear();
+    }
+
+    // Known opening moves, played without searching
+    private OpeningBook book;
+
+    public void setBook(OpeningBook book) {
+        this.book = book;
+    }
 
     public Move decideMove(Board board) {
         if (board.inCheck(color)) {
@@ -31,25 +67,34 @@ public class AIPlayer implements Player {
             gui.setCheck(board.getKing(color));
         }
 
-        // Set delay in milliseconds (1000ms = 1 second)
-        int delay = 600;
+        // Book moves are instant, the search is only needed once the game leaves the book
+        if (book != null) {
+            int move = book.probe(new Position(board, color));
+            if (move != PackedMove.NONE) {
+                stopPondering();
+                return toMove(board, move);
+            }
+        }
 
-        // Create delay for a more natural user experience
-        try {
-            Thread.sleep(delay); // Pause for the specified delay
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt(); // Restore interrupted status
-            e.printStackTrace();
+        // Use the search run during the human's turn if it guessed their move
+        if (ponderThread != null) {
+            Move move = finishPondering(board);
+            if (move != null) {
+                return move;
+            }
         }
 
-        // Find the best move
-        return getBestMoveAlphaBeta(board, depth);
+        // Find the best move within the time budget
+        return getBestMoveIterative(board, thinkTime);
     }
 
     public void update(Board b, Move move) {
         // Update model
         b.movePiece(move);
         lastMove = move;
+        if (ponder) {
+            startPondering(b);
+        }
 
         // Update view
         SwingUtilities.invokeLater(() -> {
@@ -93,267 +138,245 @@ public class AIPlayer implements Player {
     }
 
 
-    public static final int MAX = Integer.MAX_VALUE;
-    public static final int MIN = Integer.MIN_VALUE;
+    public static final int MAX = Search.MAX;
+    public static final int MIN = Search.MIN;
+    public static final int MATE = Search.MATE;
 
     public long totalTime = 0;
     public long totalNodes = 0;
+    public long ttProbes = 0;
+    public long ttHits = 0;
+    public int completedDepth = 0;
+
+    // Previously searched positions, kept between moves since the game revisits them
+    static final int DEFAULT_HASH_SIZE = 16;
+    final TranspositionTable tt;
+
+    // One search per thread, the first runs on the calling thread
+    private final AtomicBoolean stop = new AtomicBoolean();
+    private Search[] searches;
+
+    // Young Brothers Wait search on a fork/join pool, used instead of Lazy SMP when set
+    private ParallelSearch forkJoin;
+
+    public void setThreads(int threads) {
+        stopPondering();
+        searches = new Search[Math.max(1, threads)];
+        for (int i = 0; i < searches.length; i++) {
+            searches[i] = new Search(tt, stop);
+        }
+        if (forkJoin != null) {
+            setForkJoin(true);
+        }
+    }
+
+    public void setForkJoin(boolean enabled) {
+        if (forkJoin != null) {
+            forkJoin.shutdown();
+        }
+        forkJoin = enabled ? new ParallelSearch(searches.length, tt) : null;
+    }
+
+    public int getThreads() {
+        return searches.length;
+    }
 
+    // Fixed depth search
     public Move getBestMoveAlphaBeta(Board board, int depth) {
+        return search(board, depth, Long.MAX_VALUE);
+    }
+
+    // Deepens the search until the time limit, returning the best move of the last finished depth
+    public Move getBestMoveIterative(Board board, long timeLimitMs) {
+        return search(board, Search.MAX_DEPTH, timeLimitMs * 1_000_000);
+    }
+
+    // Lazy SMP by default, see Search.iterateLazySmp
+    private Move search(Board board, int maxDepth, long timeLimit) {
+        stopPondering(); // it would share the first search
         long start = System.nanoTime();
-        int bestEval = MIN;
-        totalNodes = 0;
         totalTime = 0;
-        Move bestMove = null;
+        tt.newSearch();
+        stop.set(false);
 
-        HashMap<Piece, ArrayList<int[]>> moves = board.getAllPossibleMoves(color);
-
-        for (Piece piece : moves.keySet()) {
-            ArrayList<int[]> pMoves = new ArrayList<>(moves.get(piece));
-            for (int[] move : pMoves) {
-                Move currMove = new Move(piece, move[0], move[1]);
-                board.movePiece(currMove);
-                int eval = - negamax(board, depth - 1, MIN, MAX, color); // negative --> returning opponents square in our perspective
-
-                // add bonus for captured moves
-                if (currMove.isCaptured()) {
-                    int capturedValue = pieceValues.get(currMove.getPiece().getType());
-                    int capturingValue = pieceValues.get(board.getLastCapturedPiece().getType());
-                    if (!board.getPlayersPieces(color).contains(currMove.getPiece())) {
-                        eval += (capturedValue - capturingValue) * 2; // Encourage good trades
-                    } else {
-                        eval += (capturedValue * 100); // encourage easy kills with no sacrifice
-                    }
-                }
+        if (forkJoin != null) {
+            return searchForkJoin(board, maxDepth, timeLimit, start);
+        }
 
-                // add reversal penalty
-                eval -= evaluateReversalPenalty(currMove);
-                board.undoLastMove();
+        // Search runs on bitboards, only the chosen move is converted back for the controller
+        int reversal = reversalMove();
+        for (Search search : searches) {
+            search.reversalMove = reversal;
+            search.reversalPenalty = -10;
+        }
+        int bestMove = Search.iterateLazySmp(searches, new Position(board, color), maxDepth, timeLimit);
 
-                if (eval > bestEval) {
-                    bestEval = eval;
-                    bestMove = currMove;
-                }
-            }
+        totalTime = (System.nanoTime() - start);
+        totalNodes = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        for (Search search : searches) {
+            totalNodes += search.nodes;
+            ttProbes += search.ttProbes;
+            ttHits += search.ttHits;
         }
+        completedDepth = searches[0].completedDepth;
+
+        return bestMove == PackedMove.NONE ? null : toMove(board, bestMove);
+    }
+
+    private Move searchForkJoin(Board board, int maxDepth, long timeLimit, long start) {
+        int bestMove = forkJoin.iterate(new Position(board, color), maxDepth, timeLimit);
 
         totalTime = (System.nanoTime() - start);
+        totalNodes = forkJoin.nodes;
+        ttProbes = forkJoin.ttProbes;
+        ttHits = forkJoin.ttHits;
+        completedDepth = forkJoin.completedDepth;
 
-        return bestMove;
+        return bestMove == PackedMove.NONE ? null : toMove(board, bestMove);
     }
 
-    private int evaluateReversalPenalty(Move currMove) {
-        // Check is computer is doing reversal move, e.g. Knight A -> B then Knight B -> A
-        if (lastMove != null && currMove.getPiece() == lastMove.getPiece()) {
-            if(lastMove.getCurrRow()==currMove.getTargetRow() &&
-                    lastMove.getCurrCol()==currMove.getTargetCol() &&
-                        !lastMove.isCaptured() && !currMove.isCaptured()) {
-                return -10;
-            }
+    // Converts a packed move back into a Move on the game board
+    private Move toMove(Board board, int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        Piece piece = board.findPieceByLocation(Position.row(from), Position.col(from));
+        return new Move(piece, Position.row(to), Position.col(to));
+    }
+
+    // Check is computer is doing reversal move, e.g. Knight A -> B then Knight B -> A
+    private int reversalMove() {
+        if (lastMove == null || lastMove.isCaptured()) {
+            return PackedMove.NONE;
         }
-        return 0;
+        return PackedMove.of(Position.square(lastMove.getTargetRow(), lastMove.getTargetCol()),
+                Position.square(lastMove.getCurrRow(), lastMove.getCurrCol()));
     }
 
-    /**
-     * Negamax is slightly optimized of min-max that flips score rather than writing two separate functions
-     * Alpha Beta works by eliminating nodes that cannot beat already analyzed positions at tree level
-     *
-     * @return - Evaluation of board from current player's perspective
+    /*
+     * Pondering: the computer keeps thinking while the human decides on their move.
+     * If the table has a best reply for the human, the computer plays it and searches the position
+     * it would reach, as if it was already its turn. Otherwise it searches the human's position
+     * itself, which at least fills the table with the positions after each of their replies.
+     * Runs on the first search only, until the human's move arrives in decideMove.
      */
-    public int negamax(Board board, int depth, int alpha, int beta, boolean color) {
-        totalNodes++;
-
-        if (depth == 0) {
-            return evaluate(board, color);
+    private boolean ponder = false;
+    private Thread ponderThread;
+    private long ponderStart;
+    private long ponderKey;
+    private int ponderMove = PackedMove.NONE;
+    private volatile int ponderResult;
+    public long ponderHits = 0;
+
+    public void setPonder(boolean ponder) {
+        this.ponder = ponder;
+        if (!ponder) {
+            stopPondering();
         }
+    }
 
-        int bestEval = MIN;
-
-        HashMap<Piece, ArrayList<int[]>> moves = board.getAllPossibleMoves(color);
-
-        if(moves.isEmpty()) {
-            if(board.inCheck(color)) {
-                return bestEval;
+    // Starts thinking on the human's time, board must have the human to move
+    public void startPondering(Board board) {
+        stopPondering();
+        Position position = new Position(board, !color);
+        Search search = searches[0];
+        search.reversalMove = PackedMove.NONE;
+        search.reversalPenalty = 0;
+
+        // Predicted reply, if the table has one and it's legal
+        ponderKey = 0;
+        ponderMove = PackedMove.NONE;
+        long entry = tt.probe(position.getZobristKey());
+        int predicted = entry == TranspositionTable.EMPTY ? PackedMove.NONE : TranspositionTable.move(entry);
+        for (int move : position.getAllPossibleMoves()) {
+            if (move == predicted) {
+                position.movePiece(predicted);
+                ponderKey = position.getZobristKey();
+                ponderMove = predicted;
+                search.reversalMove = reversalMove();
+                search.reversalPenalty = -10;
+                break;
             }
-            return 0;
         }
 
-        for (Piece p : moves.keySet()) {
-            ArrayList<int[]> pMoves = new ArrayList<>(moves.get(p));
-            for (int[] move : pMoves) {
-                board.movePiece(new Move(p, move[0], move[1]));
-                int eval = - negamax(board, depth - 1, -beta, -alpha, !color); // negative --> returning opponents square in our perspective
-                board.undoLastMove();
+        tt.newSearch();
+        stop.set(false);
+        ponderResult = PackedMove.NONE;
+        ponderStart = System.nanoTime();
+        ponderThread = new Thread(() -> ponderResult = search.iterate(position, 1, Search.MAX_DEPTH, Long.MAX_VALUE), "ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
 
-                bestEval = Math.max(bestEval, eval);
-                alpha = Math.max(alpha, eval);
+    // Human reply the computer is pondering on, NONE if it's pondering on all of them
+    public int getPonderMove() {
+        return ponderMove;
+    }
 
-                if (alpha >= beta) {
-                    // Move too good, opponent will avoid this position
-                    break;
-                }
-            }
+    public void stopPondering() {
+        if (ponderThread == null) {
+            return;
         }
-
-        return bestEval;
+        stop.set(true);
+        joinPonderThread(0);
+        ponderThread = null;
     }
 
-
-    // Always evaluate from current players perspective
-    public int evaluate(Board board, boolean color) {
-        int score = 0;
-
-        int numK = 0, numEK = 0;
-        int numQ = 0, numEQ = 0;
-        int numR = 0, numER = 0;
-        int numB = 0, numEB = 0;
-        int numN = 0, numEN = 0;
-        int numP = 0, numEP = 0;
-        int doubledPawns = 0;
-        int doubledEPawns = 0;
-        int blockedPawns = 0;
-        int blockedEPawns = 0;
-        int isolatedPawns = 0;
-        int isolatedEPawns = 0;
-        int mobility = 0;
-        int mobilityE = 0;
-
-        /* Symmetric evaluation function:
-         * f(p) = 200(K-K')
-         *        + 9(Q-Q')
-         *        + 5(R-R')
-         *        + 3(B-B' + N-N')
-         *        + 1(P-P')
-         *        - 0.5(D-D' + S-S' + I-I')
-         *        + 0.1(M-M') + ...
-         *
-         * KQRBNP = number of kings, queens, rooks, bishops, knights and pawns
-         * D,S,I = doubled, blocked and isolated pawns
-         * M = Mobility (the number of legal moves)
-         */
-
-        boolean[] pawnPresence = new boolean[8];
-        boolean[] pawnEPresence = new boolean[8];
-        for (int col = 0; col < 8; col++) {
-            boolean columnHasPawn = false;
-            boolean columnHasEPawn = false;
-            for (int row = 0; row < 8; row++) {
-                Piece p = board.findPieceByLocation(row, col);
-                if (p==null) {
-                    continue;
-                }
-                boolean sameColor = p.isWhite() == color;
-                if (sameColor) {
-                    switch(p.getType()) {
-                        case "king":
-                            numK++;
-                            break;
-                        case "queen":
-                            numQ++;
-                            break;
-                        case "rook":
-                            numR++;
-                            break;
-                        case "bishop":
-                            numB++;
-                            break;
-                        case "knight":
-                            numN++;
-                            break;
-                        case "pawn":
-                            numP++;
-                            // double pawns - when two or more pawns of same color are on the same column
-                            if(columnHasPawn) doubledPawns++;
-                            columnHasPawn = true;
-
-                            // blocked pawns - pawns that can't move forward because another piece (regardless of color) is directly in front of it
-                            int forwardDirection = color ? -1 : 1;
-                            int nextRow = forwardDirection + row;
-                            if (nextRow >= 0 && nextRow < 8
-                                    && board.findPieceByLocation(nextRow,col)!=null) {
-                                blockedPawns++;
-                            }
-                    }
-                } else {
-                    switch(p.getType()) {
-                        case "king":
-                            numEK++;
-                            break;
-                        case "queen":
-                            numEQ++;
-                            break;
-                        case "rook":
-                            numER++;
-                            break;
-                        case "bishop":
-                            numEB++;
-                            break;
-                        case "knight":
-                            numEN++;
-                            break;
-                        case "pawn":
-                            numEP++;
-                            // double pawns - when two or more pawns of same color are on the same column
-                            if(columnHasEPawn) doubledEPawns++;
-                            columnHasEPawn = true;
-
-                            // blocked pawns - pawns that can't move forward because another piece (regardless of color) is directly in front of it
-                            int forwardDirection = color ? -1 : 1;
-                            int nextRow = forwardDirection + row;
-                            if (nextRow >= 0 && nextRow < 8
-                                    && board.findPieceByLocation(nextRow,col)!=null) {
-                                blockedEPawns++;
-                            }
-                    }
-                }
-
+    /*
+     * Called once the human has moved. If they played the predicted reply the ponder search has been
+     * on the right position all along, it gets whatever is left of the think time counted from when
+     * it started and its move is played. Otherwise it's stopped and null is returned, the normal search
+     * then starts from what it left in the table.
+     */
+    private Move finishPondering(Board board) {
+        long start = System.nanoTime();
+        boolean hit = ponderKey != 0 && new Position(board, color).getZobristKey() == ponderKey;
+        if (hit) {
+            long remainingMs = thinkTime - (start - ponderStart) / 1_000_000;
+            if (remainingMs > 0) {
+                joinPonderThread(remainingMs);
             }
-            pawnPresence[col] = columnHasPawn;
-            pawnEPresence[col] = columnHasEPawn;
         }
-
-        // Check for isolates pawns - pawns that don't have any pawns on their left column and right column
-        for (int i = 0; i < 8; i++) {
-            boolean isoPawn = true;
-            boolean isoEPawn = true;
-            if (i > 0) { // check left column
-                if(pawnPresence[i - 1]) isoPawn = false;
-                if(pawnEPresence[i - 1]) isoEPawn = false;
-            }
-            if (i < 7) { // check right column
-                if(pawnPresence[i + 1]) isoPawn = false;
-                if(pawnPresence[i + 1]) isoEPawn = false;
-            }
-            if(isoPawn) isolatedPawns++;
-            if(isoEPawn) isolatedEPawns++;
+        stopPondering();
+        if (!hit || ponderResult == PackedMove.NONE) {
+            return null;
         }
 
-        // Update mobility
-        mobility = countMobility(board, color);
-        mobilityE = countMobility(board, !color);
+        ponderHits++;
+        totalTime = (System.nanoTime() - start);
+        totalNodes = searches[0].nodes;
+        ttProbes = searches[0].ttProbes;
+        ttHits = searches[0].ttHits;
+        completedDepth = searches[0].completedDepth;
+        return toMove(board, ponderResult);
+    }
+
+    private void joinPonderThread(long millis) {
+        try {
+            ponderThread.join(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Restore interrupted status
+        }
+    }
 
+    // Percentage of transposition table probes in the last search that found their position
+    public double getHitRate() {
+        return ttProbes == 0 ? 0 : 100.0 * ttHits / ttProbes;
+    }
 
-        score = 2000 * (numK - numEK) +
-                90 * (numQ - numEQ) +
-                50 * (numR - numER) +
-                30 * ((numB - numEB) + (numN - numEN)) +
-                10 * (numP - numEP) -
-                5 * ((doubledPawns - doubledEPawns) +
-                        (blockedPawns - blockedEPawns) +
-                        (isolatedPawns - isolatedEPawns)) +
-                1 * (mobility - mobilityE);
+    public int see(Position position, int move) {
+        return searches[0].see(position, move);
+    }
 
-        return score;
+    // Evaluate game board from given players perspective
+    public int evaluate(Board board, boolean color) {
+        return evaluate(new Position(board, color));
     }
 
-    public int countMobility(Board board, boolean color) {
-        int count = 0;
-        HashMap<Piece, ArrayList<int[]>> moves = board.getAllPossibleMoves(color);
-        for (Piece p : moves.keySet()) {
-            ArrayList<int[]> pMoves = new ArrayList<>(moves.get(p));
-            count += pMoves.size();
-        }
-        return count;
+    // Always evaluate from the perspective of the side to move
+    public int evaluate(Position position) {
+        return searches[0].evaluate(position);
     }
 
 
@@ -10,17 +10,21 @@ import view.ChessGUI.ClickListener;
 import javax.swing.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 public class HumanPlayer implements Player, ClickListener {
     ChessGUI gui;
     Board board;
     Piece selectedPiece;
     HashMap<Piece, ArrayList<int[]>> availablePiecesToMove;
-    Move currentMove;
-    boolean handlingPromotion;
     boolean color;
     boolean inCheck;
 
+    // Completed from the GUI thread when the user clicks a target square or picks a promotion piece,
+    // the game loop waits on them instead of polling
+    volatile CompletableFuture<Move> pendingMove = new CompletableFuture<>();
+    volatile CompletableFuture<String> pendingPromotion = new CompletableFuture<>();
+
     public HumanPlayer() {
         this.color = true;
     }
@@ -30,7 +34,7 @@ public class HumanPlayer implements Player, ClickListener {
     }
 
     public Move decideMove(Board b) {
-        currentMove = null; // reset move before starting
+        pendingMove = new CompletableFuture<>(); // reset move before starting
         board = b;
         selectedPiece = null;
 
@@ -47,17 +51,9 @@ public class HumanPlayer implements Player, ClickListener {
         gui.enableUserClicks(availablePiecesToMove);
 
         // wait until user finishes decision
-        while (currentMove == null) {
-            try {
-                Thread.sleep(100); // Prevent busy waiting by pausing briefly
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                System.out.println("Interrupted while waiting for the move.");
-            }
-        }
-
+        Move move = pendingMove.join();
         board = null;
-        return currentMove;
+        return move;
     }
 
     @Override
@@ -74,33 +70,42 @@ public class HumanPlayer implements Player, ClickListener {
             selectedPiece = piece;
             gui.highlightLegalMoves(availablePiecesToMove.get(selectedPiece));
         } else {
-            currentMove = new Move(selectedPiece, row, col);
+            pendingMove.complete(new Move(selectedPiece, row, col));
         }
     }
 
     @Override
     public void handlePromotionSelection(String piece) {
+        pendingPromotion.complete(piece);
+    }
+
+    // Waits for the user to pick the piece their pawn promotes to, then applies it to the board
+    private void promote(Board b, Move move) {
+        String piece = pendingPromotion.join();
 
         // Create new promotional piece based off user selection
         Piece promotionalPiece = switch (piece) {
-            case "queen" -> new Queen(true, currentMove.getTargetRow(), currentMove.getTargetCol());
-            case "rook" -> new Rook(true, currentMove.getTargetRow(), currentMove.getTargetCol());
-            case "bishop" -> new Bishop(true, currentMove.getTargetRow(), currentMove.getTargetCol());
-            case "knight" -> new Knight(true, currentMove.getTargetRow(), currentMove.getTargetCol());
+            case "queen" -> new Queen(true, move.getTargetRow(), move.getTargetCol());
+            case "rook" -> new Rook(true, move.getTargetRow(), move.getTargetCol());
+            case "bishop" -> new Bishop(true, move.getTargetRow(), move.getTargetCol());
+            case "knight" -> new Knight(true, move.getTargetRow(), move.getTargetCol());
             default -> null;
         };
 
         // Create new move and apply to the board
-        Move promotionalMove = new Move(promotionalPiece, currentMove.getTargetRow(), currentMove.getTargetCol());
-        board.movePiece(promotionalMove);
-        gui.update(promotionalMove);
-        handlingPromotion = false;
+        Move promotionalMove = new Move(promotionalPiece, move.getTargetRow(), move.getTargetCol());
+        b.movePiece(promotionalMove);
+        SwingUtilities.invokeLater(() -> gui.update(promotionalMove));
     }
 
 
     public void update(Board b, Move move) {
         // Update model board
         b.movePiece(move);
+        boolean promoting = b.isPromotePawn(move);
+        if (promoting) {
+            pendingPromotion = new CompletableFuture<>();
+        }
 
         // Update GUI
         SwingUtilities.invokeLater(() -> {
@@ -118,12 +123,8 @@ public class HumanPlayer implements Player, ClickListener {
                 gui.update(castlingMove);
             }
             // if pawn promotion, display options panel to let user pick new piece/move
-            if(b.isPromotePawn(move)) {
-                handlingPromotion = true;
-                while (handlingPromotion) {
-                    currentMove = move;
-                    gui.showPromotionalPanel();
-                }
+            if(promoting) {
+                gui.showPromotionalPanel();
             }
             // If king was in check, undo check
             if(inCheck) {
@@ -141,6 +142,11 @@ public class HumanPlayer implements Player, ClickListener {
 
             gui.setTurn(false); // switch to Computer player
         });
+
+        // The computer can't move until the promoted piece is on the board
+        if (promoting) {
+            promote(b, move);
+        }
     }
 
     @Override
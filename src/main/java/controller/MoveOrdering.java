@@ -0,0 +1,123 @@
+package controller;
+
+import model.PackedMove;
+import model.Position;
+
+/**
+ * Alpha-beta prunes the most when the best move is searched first, so moves are tried in order of
+ * how likely they are to cause a cutoff:
+ *
+ * 1. the hash move (best move stored in the transposition table)
+ * 2. captures and promotions, most valuable victim first, then least valuable attacker (MVV-LVA)
+ * 3. two killer moves per ply, quiet moves that caused a cutoff in a sibling position
+ * 4. other quiet moves, by how often they caused cutoffs anywhere in the tree (history heuristic)
+ *
+ * Moves are scored once and then picked one at a time, since after a cutoff the rest are never needed.
+ */
+public class MoveOrdering {
+
+    private static final int HASH_MOVE = 1 << 30;
+    private static final int CAPTURE = 1 << 29;
+    private static final int FIRST_KILLER = CAPTURE - 1;
+    private static final int SECOND_KILLER = CAPTURE - 2;
+    // History scores are halved once one reaches this, so they stay below the killers
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    private final int[][] scores;
+    private final int[][] killers;
+    private final int[][] history = new int[2][64 * 64];
+
+    public MoveOrdering(int maxPly) {
+        scores = new int[maxPly][Position.MAX_MOVES];
+        killers = new int[maxPly][2];
+    }
+
+    // Scores the moves generated at this ply, must be called before next()
+    public void score(Position position, int[] moves, int count, int ply, int hashMove) {
+        int[] plyScores = scores[ply];
+        int color = position.getSideToMove();
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (move == hashMove) {
+                plyScores[i] = HASH_MOVE;
+            } else if (!PackedMove.isQuiet(move)) {
+                plyScores[i] = CAPTURE + mvvLva(position, move);
+            } else if (move == killers[ply][0]) {
+                plyScores[i] = FIRST_KILLER;
+            } else if (move == killers[ply][1]) {
+                plyScores[i] = SECOND_KILLER;
+            } else {
+                plyScores[i] = history[color][fromTo(move)];
+            }
+        }
+    }
+
+    // Moves the best remaining move to index and returns it
+    public int next(int[] moves, int count, int index, int ply) {
+        int[] plyScores = scores[ply];
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (plyScores[i] > plyScores[best]) {
+                best = i;
+            }
+        }
+        if (best != index) {
+            int move = moves[best];
+            moves[best] = moves[index];
+            moves[index] = move;
+            int score = plyScores[best];
+            plyScores[best] = plyScores[index];
+            plyScores[index] = score;
+        }
+        return moves[index];
+    }
+
+    // Remember a quiet move that caused a beta cutoff
+    public void cutoff(int color, int move, int ply, int depth) {
+        if (!PackedMove.isQuiet(move)) {
+            return; // captures are already ordered well
+        }
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+
+        // Deeper cutoffs save more work, so they count for more
+        int[] table = history[color];
+        int index = fromTo(move);
+        table[index] += depth * depth;
+        if (table[index] >= HISTORY_LIMIT) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] >>= 1;
+            }
+        }
+    }
+
+    // Killers only apply to the position they were found in, history is kept but weighted down
+    public void newSearch() {
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = PackedMove.NONE;
+            plyKillers[1] = PackedMove.NONE;
+        }
+        for (int[] table : history) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] >>= 3;
+            }
+        }
+    }
+
+    // Capturing a queen with a pawn comes first, a pawn with a queen last
+    private static int mvvLva(Position position, int move) {
+        int attacker = Position.typeOf(position.getPiece(PackedMove.from(move)));
+        int victim = PackedMove.isEnPassant(move) ? Position.PAWN
+                : PackedMove.isCapture(move) ? Position.typeOf(position.getPiece(PackedMove.to(move)))
+                : -1;
+        // A promotion gains the promoted piece on top of anything it captures
+        int gain = victim + 1 + PackedMove.promotion(move);
+        return gain * 8 - attacker;
+    }
+
+    private static int fromTo(int move) {
+        return move & 0xFFF;
+    }
+}
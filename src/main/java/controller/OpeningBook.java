@@ -0,0 +1,142 @@
+package controller;
+
+import model.PackedMove;
+import model.Position;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Opening book in the Polyglot .bin format, so the computer plays known openings instantly
+ * instead of searching from the first move.
+ * The file is a list of 16 byte big-endian entries sorted by position key:
+ *
+ * bytes 0-7   Zobrist key of the position
+ * bytes 8-9   move: bits 0-5 target square, 6-11 starting square (square = rank * 8 + file,
+ *             a1 = 0), 12-14 promotion piece (1 knight ... 4 queen); castling is written as
+ *             the king taking its own rook (e1h1)
+ * bytes 10-11 weight, how often the move should be picked relative to the others
+ * bytes 12-15 learning data, unused
+ *
+ * The file is memory mapped rather than read, so it stays out of the heap and only the pages a
+ * lookup touches are loaded. Entries of a position are found by binary search on the key.
+ *
+ * Keys come from Position.getZobristKey(), which follows the Polyglot layout with this game's
+ * own random numbers, so books are built from games with tools.BookBuilder.
+ */
+public class OpeningBook {
+
+    static final int ENTRY_BYTES = 16;
+
+    private final MappedByteBuffer entries;
+    private final int size;
+
+    public OpeningBook(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length % ENTRY_BYTES != 0 || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a Polyglot book: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            size = (int) (length / ENTRY_BYTES);
+        }
+    }
+
+    // Number of entries in the book
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Book moves of the position that are legal in it, with their weights.
+     *
+     * @return - number of moves written to moves and weights
+     */
+    public int getMoves(Position position, int[] moves, int[] weights) {
+        long key = position.getZobristKey();
+        int[] legal = position.getAllPossibleMoves();
+        int count = 0;
+        for (int i = firstEntry(key); i < size && entries.getLong(i * ENTRY_BYTES) == key; i++) {
+            int move = toLegalMove(legal, entries.getShort(i * ENTRY_BYTES + 8) & 0xFFFF);
+            int weight = entries.getShort(i * ENTRY_BYTES + 10) & 0xFFFF;
+            if (move != PackedMove.NONE && weight > 0 && count < moves.length) {
+                moves[count] = move;
+                weights[count] = weight;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Book move picked at random in proportion to its weight, NONE when the position isn't in the book
+    public int probe(Position position) {
+        return probe(position, ThreadLocalRandom.current());
+    }
+
+    public int probe(Position position, Random random) {
+        int[] moves = new int[Position.MAX_MOVES];
+        int[] weights = new int[Position.MAX_MOVES];
+        int count = getMoves(position, moves, weights);
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += weights[i];
+        }
+        if (total == 0) {
+            return PackedMove.NONE;
+        }
+
+        int pick = random.nextInt(total);
+        for (int i = 0; i < count; i++) {
+            pick -= weights[i];
+            if (pick < 0) {
+                return moves[i];
+            }
+        }
+        return moves[count - 1];
+    }
+
+    // Index of the first entry with the key (or of the first larger one), keys compare unsigned
+    private int firstEntry(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(entries.getLong(middle * ENTRY_BYTES), key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int toLegalMove(int[] legal, int bookMove) {
+        for (int move : legal) {
+            if (encode(move) == bookMove) {
+                return move;
+            }
+        }
+        return PackedMove.NONE;
+    }
+
+    // A move as it's stored in the book
+    public static int encode(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        if (PackedMove.isCastling(move)) {
+            to = Position.square(Position.row(to), Position.col(to) > Position.col(from) ? 7 : 0);
+        }
+        return bookSquare(to) | bookSquare(from) << 6 | PackedMove.promotion(move) << 12;
+    }
+
+    // Books number squares from a1, Position from a8
+    private static int bookSquare(int square) {
+        return (7 - Position.row(square)) * 8 + Position.col(square);
+    }
+}
@@ -0,0 +1,288 @@
+package controller;
+
+import model.PackedMove;
+import model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Young Brothers Wait parallel search on a ForkJoinPool, the alternative to the Lazy SMP threads
+ * of AIPlayer. At every node deep enough to be worth splitting, the first (eldest brother) move is
+ * searched alone since it's usually the best one and gives the bound to search the others against.
+ * Its younger brothers are then searched in parallel as fork/join subtasks, each on its own copy of
+ * the position. If one of them fails high the node is refuted and the rest are cancelled.
+ * Nodes close to the leaves are searched serially by the worker thread's own Search.
+ */
+public class ParallelSearch {
+
+    // Nodes with less depth left are searched serially, splitting them costs more than it saves
+    static final int SPLIT_DEPTH = 3;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable tt;
+    private final AtomicBoolean stop = new AtomicBoolean();
+
+    // Each worker thread keeps one Search for its serial subtrees
+    private final Queue<Search> searches = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Search> threadSearch;
+    private final LongAdder splitNodes = new LongAdder();
+    private final LongAdder splitProbes = new LongAdder();
+    private final LongAdder splitHits = new LongAdder();
+
+    private long deadline = Long.MAX_VALUE;
+    private volatile int rootMove;
+
+    public long nodes = 0;
+    public long ttProbes = 0;
+    public long ttHits = 0;
+    public int completedDepth = 0;
+    public int score = 0;
+
+    public ParallelSearch(int threads, TranspositionTable tt) {
+        this.pool = new ForkJoinPool(threads);
+        this.tt = tt;
+        this.threadSearch = ThreadLocal.withInitial(() -> {
+            Search search = new Search(tt, stop);
+            searches.add(search);
+            return search;
+        });
+    }
+
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Iterative deepening with every iteration split across the pool.
+     *
+     * @param timeLimit - nanoseconds, Long.MAX_VALUE to search to maxDepth
+     * @return - Best move of the last iteration that finished in time, NONE if there are no legal moves
+     */
+    public int iterate(Position position, int maxDepth, long timeLimit) {
+        long start = System.nanoTime();
+        deadline = timeLimit == Long.MAX_VALUE ? Long.MAX_VALUE : start + timeLimit;
+        stop.set(false);
+        long startNodes = countNodes();
+        long startProbes = countProbes();
+        long startHits = countHits();
+        completedDepth = 0;
+        int bestMove = PackedMove.NONE;
+
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            Position root = new Position(position);
+            int searchDepth = depth;
+            rootMove = PackedMove.NONE;
+            int eval = pool.invoke(new RecursiveTask<Integer>() {
+                @Override
+                protected Integer compute() {
+                    return search(root, searchDepth, 0, Search.MIN, Search.MAX, null);
+                }
+            });
+            if (stop.get() || rootMove == PackedMove.NONE) {
+                break; // out of time, or no legal moves
+            }
+            bestMove = rootMove;
+            score = eval;
+            completedDepth = depth;
+
+            if (eval >= Search.MATE - Search.MAX_PLY || System.nanoTime() - start > timeLimit / 2) {
+                break;
+            }
+        }
+
+        nodes = countNodes() - startNodes;
+        ttProbes = countProbes() - startProbes;
+        ttHits = countHits() - startHits;
+        return bestMove;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /*
+     * Negamax over a position owned by the calling task. parent is the closest split point above
+     * this node, its cancellation (or the stop flag) means the result is no longer needed.
+     */
+    private int search(Position position, int depth, int ply, int alpha, int beta, SplitPoint parent) {
+        if (System.nanoTime() > deadline) {
+            stop.set(true);
+        }
+        if (isCancelled(parent)) {
+            return 0;
+        }
+
+        // Small subtrees are searched by this thread alone (the root always splits)
+        if (depth < SPLIT_DEPTH && ply > 0) {
+            return threadSearch.get().searchSubtree(position, depth, ply, alpha, beta, deadline,
+                    () -> isCancelled(parent));
+        }
+        splitNodes.increment();
+
+        long key = position.getZobristKey();
+        long entry = tt.probe(key);
+        int hashMove = PackedMove.NONE;
+        splitProbes.increment();
+        if (entry != TranspositionTable.EMPTY) {
+            splitHits.increment();
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = Search.fromTT(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        // Split nodes are rare enough to allocate their own move list, the ply buffers belong to the thread
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.getAllPossibleMoves(moves);
+        if (count == 0) {
+            return position.inCheck() ? -Search.MATE + ply : 0;
+        }
+        threadSearch.get().orderMoves(position, moves, count, ply, hashMove);
+
+        // Eldest brother alone, on this task's own position
+        int originalAlpha = alpha;
+        position.movePiece(moves[0]);
+        int bestEval = -search(position, depth - 1, ply + 1, -beta, -alpha, parent);
+        position.undoLastMove();
+        if (isCancelled(parent)) {
+            return 0;
+        }
+        int bestMove = moves[0];
+        alpha = Math.max(alpha, bestEval);
+
+        // Younger brothers in parallel, against the bound the eldest one set
+        if (alpha < beta && count > 1) {
+            SplitPoint split = new SplitPoint(parent, alpha, beta);
+            List<Brother> brothers = new ArrayList<>(count - 1);
+            for (int i = 1; i < count; i++) {
+                brothers.add(new Brother(new Position(position), moves[i], depth, ply, split));
+            }
+            ForkJoinTask.invokeAll(brothers);
+            if (isCancelled(parent)) {
+                return 0;
+            }
+            for (Brother brother : brothers) {
+                if (brother.searched && brother.eval > bestEval) {
+                    bestEval = brother.eval;
+                    bestMove = brother.move;
+                }
+            }
+        }
+
+        int bound = bestEval <= originalAlpha ? TranspositionTable.UPPER
+                : bestEval >= beta ? TranspositionTable.LOWER
+                : TranspositionTable.EXACT;
+        tt.store(key, bestMove, Search.toTT(bestEval, ply), depth, bound);
+
+        if (ply == 0) {
+            rootMove = bestMove;
+        }
+        return bestEval;
+    }
+
+    private boolean isCancelled(SplitPoint split) {
+        return split != null ? split.isCancelled() : stop.get();
+    }
+
+    private long countNodes() {
+        long total = splitNodes.sum();
+        for (Search search : searches) {
+            total += search.nodes;
+        }
+        return total;
+    }
+
+    private long countProbes() {
+        long total = splitProbes.sum();
+        for (Search search : searches) {
+            total += search.ttProbes;
+        }
+        return total;
+    }
+
+    private long countHits() {
+        long total = splitHits.sum();
+        for (Search search : searches) {
+            total += search.ttHits;
+        }
+        return total;
+    }
+
+    // A node whose younger brothers are being searched in parallel
+    private final class SplitPoint {
+        final SplitPoint parent;
+        final AtomicInteger alpha;
+        final int beta;
+        volatile boolean cutoff;
+
+        SplitPoint(SplitPoint parent, int alpha, int beta) {
+            this.parent = parent;
+            this.alpha = new AtomicInteger(alpha);
+            this.beta = beta;
+        }
+
+        boolean isCancelled() {
+            return cutoff || ParallelSearch.this.isCancelled(parent);
+        }
+
+        // A brother finished, later brothers start from the raised bound
+        void update(int eval) {
+            alpha.accumulateAndGet(eval, Math::max);
+            if (eval >= beta) {
+                cutoff = true; // node refuted, the other brothers are wasted work
+            }
+        }
+    }
+
+    // One younger brother move of a split point, searched on its own copy of the position
+    private final class Brother extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final Position position;
+        final int move;
+        final int depth;
+        final int ply;
+        final SplitPoint split;
+        int eval;
+        boolean searched;
+
+        Brother(Position position, int move, int depth, int ply, SplitPoint split) {
+            this.position = position;
+            this.move = move;
+            this.depth = depth;
+            this.ply = ply;
+            this.split = split;
+        }
+
+        @Override
+        protected void compute() {
+            if (split.isCancelled()) {
+                return;
+            }
+            position.movePiece(move);
+            int result = -search(position, depth - 1, ply + 1, -split.beta, -split.alpha.get(), split);
+            if (split.isCancelled()) {
+                return; // stopped part way, the result is meaningless
+            }
+            eval = result;
+            searched = true;
+            split.update(result);
+        }
+    }
+}
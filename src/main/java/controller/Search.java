@@ -0,0 +1,636 @@
+package controller;
+
+import model.Attacks;
+import model.PackedMove;
+import model.PieceSquareTables;
+import model.Position;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Alpha-beta search of a Position, run by one thread.
+ * Everything the search writes to (move buffers, move ordering tables, node counts) belongs to the
+ * Search, so several can run side by side on their own copies of a position. Only the transposition
+ * table and the stop flag are shared between them.
+ */
+public class Search {
+
+    public static final int MAX = Integer.MAX_VALUE;
+    public static final int MIN = -MAX; // symmetric so negating a score never overflows
+
+    // Scores above MATE - MAX_PLY are forced mates, closer mates score higher
+    public static final int MATE = 30000;
+
+    // One move buffer per search ply, reused so the search doesn't allocate
+    static final int MAX_PLY = 64;
+    // Deepest iteration the time limited search will start, leaves room in the ply buffers
+    static final int MAX_DEPTH = 32;
+    // Nodes searched between looks at the clock and the stop flag
+    static final int CHECK_INTERVAL = 1024;
+
+    // Margin for positional gains a capture might bring on top of the material, in eval units (2 pawns)
+    static final int DELTA_MARGIN = 20;
+
+    // Same values as the evaluation, indexed by Position piece type
+    static final int[] PIECE_VALUES = PieceSquareTables.VALUES;
+
+    private final TranspositionTable tt;
+    private final AtomicBoolean stop;
+
+    private final int[][] moveBuffers = new int[MAX_PLY][Position.MAX_MOVES];
+    private final int[] seeGain = new int[32];
+    private final MoveOrdering ordering = new MoveOrdering(MAX_PLY);
+
+    // Pawn structure scores by pawn hash, per thread so it needs no locking
+    static final int PAWN_CACHE_SIZE = 1 << 14;
+    private final long[] pawnKeys = new long[PAWN_CACHE_SIZE];
+    private final int[] pawnScores = new int[PAWN_CACHE_SIZE];
+
+    // Skip captures that lose material in the exchange on their square
+    boolean useSee = true;
+
+    // Root move whose score gets adjusted by reversalPenalty, e.g. moving a piece straight back
+    int reversalMove = PackedMove.NONE;
+    int reversalPenalty = 0;
+
+    // Stops all threads once this search has visited that many nodes
+    long nodeLimit = Long.MAX_VALUE;
+
+    // Told about every iteration that finishes, e.g. to report progress
+    interface IterationListener {
+        void completed(Position position, int depth, int score, int bestMove);
+    }
+    IterationListener listener;
+
+    public long nodes = 0;
+    public long ttProbes = 0;
+    public long ttHits = 0;
+    public int completedDepth = 0;
+    public int score = 0;
+
+    private long deadline = Long.MAX_VALUE;
+    private boolean stopped = false;
+    private BooleanSupplier cancelled = NEVER;
+    private static final BooleanSupplier NEVER = () -> false;
+    private int rootScore;
+
+    public Search(TranspositionTable tt, AtomicBoolean stop) {
+        this.tt = tt;
+        this.stop = stop;
+    }
+
+    /**
+     * Iterative deepening: search depth 1, 2, 3... until maxDepth or the time runs out.
+     * Each iteration fills the transposition table with best moves that the next one
+     * searches first, so the extra shallow searches cost little and make the deep one faster.
+     *
+     * @param firstDepth - depth of the first iteration, helper threads skip ahead to search different depths
+     * @param timeLimit - nanoseconds, Long.MAX_VALUE to only stop at maxDepth or on the stop flag
+     * @return - Best move of the last iteration that finished in time, NONE if there are no legal moves
+     */
+    public int iterate(Position position, int firstDepth, int maxDepth, long timeLimit) {
+        long start = System.nanoTime();
+        deadline = timeLimit == Long.MAX_VALUE ? Long.MAX_VALUE : start + timeLimit;
+        stopped = false;
+        nodes = 0;
+        ttProbes = 0;
+        ttHits = 0;
+        completedDepth = 0;
+        ordering.newSearch();
+
+        int[] moves = moveBuffers[0];
+        int count = position.getAllPossibleMoves(moves);
+
+        // Later iterations put their best move first, the first one starts with captures
+        orderMoves(position, moves, count, 0, PackedMove.NONE);
+        int bestMove = count > 0 ? moves[0] : PackedMove.NONE;
+
+        for (int depth = firstDepth; depth <= maxDepth && count > 0; depth++) {
+            int move = searchRoot(position, depth, moves, count);
+            if (stopped) {
+                break; // unfinished iteration, its best move can't be trusted
+            }
+            bestMove = move;
+            score = rootScore;
+            completedDepth = depth;
+            if (listener != null) {
+                listener.completed(position, depth, score, bestMove);
+            }
+
+            // Principal variation of this iteration is searched first in the next one
+            moveToFront(moves, count, bestMove);
+
+            // Forced mate found or not enough time left to finish another iteration
+            if (rootScore >= MATE - MAX_PLY || System.nanoTime() - start > timeLimit / 2) {
+                break;
+            }
+        }
+
+        return bestMove;
+    }
+
+    /*
+     * Lazy SMP: every thread searches the same root on its own copy of the position.
+     * They share nothing but the transposition table, so results found by one thread are
+     * picked up by the others when they reach the same positions, and since helpers start
+     * at different depths they tend to explore different parts of the tree first.
+     * The first search runs on the calling thread, decides the move and stops the others once it's done.
+     */
+    static int iterateLazySmp(Search[] searches, Position position, int maxDepth, long timeLimit) {
+        Thread[] helpers = new Thread[searches.length - 1];
+        for (int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            Position copy = new Position(position);
+            int firstDepth = 1 + i % 2;
+            helpers[i - 1] = new Thread(() -> helper.iterate(copy, firstDepth, maxDepth, Long.MAX_VALUE), "search-" + i);
+            helpers[i - 1].setDaemon(true);
+            helpers[i - 1].start();
+        }
+
+        int bestMove = searches[0].iterate(position, 1, maxDepth, timeLimit);
+
+        searches[0].stop.set(true);
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // Restore interrupted status
+            }
+        }
+        return bestMove;
+    }
+
+    /*
+     * Best line from the root as far as the transposition table knows it, starting with bestMove.
+     * Stops at the first position whose entry is missing, overwritten or has an illegal move.
+     */
+    int principalVariation(Position position, int bestMove, int[] pv) {
+        int length = 0;
+        int move = bestMove;
+        while (move != PackedMove.NONE && length < pv.length) {
+            pv[length++] = move;
+            position.movePiece(move);
+            long entry = tt.probe(position.getZobristKey());
+            int next = entry == TranspositionTable.EMPTY ? PackedMove.NONE : TranspositionTable.move(entry);
+            move = PackedMove.NONE;
+            int count = position.getAllPossibleMoves(moveBuffers[MAX_PLY - 1]);
+            for (int i = 0; i < count; i++) {
+                if (moveBuffers[MAX_PLY - 1][i] == next) {
+                    move = next;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            position.undoLastMove();
+        }
+        return length;
+    }
+
+    // Searches every root move to the given depth and returns the best one (score in rootScore)
+    private int searchRoot(Position position, int depth, int[] moves, int count) {
+        int bestEval = MIN;
+        int bestMove = PackedMove.NONE;
+
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int penalty = move == reversalMove ? reversalPenalty : 0;
+
+            // Only a move beating the best so far (after its penalty) needs an exact score
+            int alpha = bestEval == MIN ? MIN : bestEval + penalty;
+            position.movePiece(move);
+            int eval = - negamax(position, depth - 1, 1, -MAX, -alpha); // negative --> returning opponents square in our perspective
+
+            // add reversal penalty
+            eval -= penalty;
+            position.undoLastMove();
+
+            if (stopped) {
+                break;
+            }
+            if (eval > bestEval) {
+                bestEval = eval;
+                bestMove = move;
+            }
+        }
+
+        rootScore = bestEval;
+        return bestMove;
+    }
+
+    private static void moveToFront(int[] moves, int count, int move) {
+        for (int i = 1; i < count; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i); // keep the order of the others
+                moves[0] = move;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Searches one subtree of a search split across threads (see ParallelSearch), giving up
+     * once cancelled returns true, e.g. when a sibling subtree already caused a cutoff.
+     *
+     * @return - Score from the perspective of the side to move, meaningless if stopped() is true
+     */
+    int searchSubtree(Position position, int depth, int ply, int alpha, int beta,
+                      long deadline, BooleanSupplier cancelled) {
+        this.deadline = deadline;
+        this.cancelled = cancelled;
+        stopped = false;
+        try {
+            return negamax(position, depth, ply, alpha, beta);
+        } finally {
+            this.cancelled = NEVER;
+        }
+    }
+
+    boolean stopped() {
+        return stopped;
+    }
+
+    // Sorts moves best first, for callers that want the whole list ordered up front
+    void orderMoves(Position position, int[] moves, int count, int ply, int hashMove) {
+        ordering.score(position, moves, count, ply, hashMove);
+        for (int i = 0; i < count; i++) {
+            ordering.next(moves, count, i, ply);
+        }
+    }
+
+    // Out of time or stopped by another thread, the result is thrown away so any score will do
+    private boolean checkStop() {
+        if (!stopped && (nodes & (CHECK_INTERVAL - 1)) == 0) {
+            if (System.nanoTime() > deadline || nodes >= nodeLimit) {
+                stop.set(true); // other threads searching the same position are out of time too
+            }
+            stopped = stop.get() || cancelled.getAsBoolean();
+        }
+        return stopped;
+    }
+
+    /**
+     * Negamax is slightly optimized of min-max that flips score rather than writing two separate functions
+     * Alpha Beta works by eliminating nodes that cannot beat already analyzed positions at tree level
+     * Positions reached through different move orders are only searched once thanks to the transposition table
+     *
+     * @return - Evaluation of board from the perspective of the side to move
+     */
+    public int negamax(Position position, int depth, int ply, int alpha, int beta) {
+        nodes++;
+        if (checkStop()) {
+            return 0;
+        }
+
+        if (depth == 0) {
+            return quiesce(position, ply, alpha, beta);
+        }
+
+        // Reuse an earlier result if it was searched at least as deep and its bound settles this window
+        long key = position.getZobristKey();
+        long entry = tt.probe(key);
+        int hashMove = PackedMove.NONE;
+        ttProbes++;
+        if (entry != TranspositionTable.EMPTY) {
+            ttHits++;
+            hashMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTT(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int originalAlpha = alpha;
+        int bestEval = MIN;
+        int bestMove = PackedMove.NONE;
+
+        int[] moves = moveBuffers[ply];
+        int count = position.getAllPossibleMoves(moves);
+
+        if(count == 0) {
+            if(position.inCheck()) {
+                return -MATE + ply; // checkmated, the sooner the worse
+            }
+            return 0;
+        }
+
+        // Most promising moves first so cutoffs happen early
+        ordering.score(position, moves, count, ply, hashMove);
+
+        for (int i = 0; i < count; i++) {
+            ordering.next(moves, count, i, ply);
+            position.movePiece(moves[i]);
+            int eval = - negamax(position, depth - 1, ply + 1, -beta, -alpha); // negative --> returning opponents square in our perspective
+            position.undoLastMove();
+
+            if (stopped) {
+                return 0;
+            }
+            if (eval > bestEval) {
+                bestEval = eval;
+                bestMove = moves[i];
+            }
+            alpha = Math.max(alpha, eval);
+
+            if (alpha >= beta) {
+                // Move too good, opponent will avoid this position
+                ordering.cutoff(position.getSideToMove(), moves[i], ply, depth);
+                break;
+            }
+        }
+
+        int bound = bestEval <= originalAlpha ? TranspositionTable.UPPER
+                : bestEval >= beta ? TranspositionTable.LOWER
+                : TranspositionTable.EXACT;
+        tt.store(key, bestMove, toTT(bestEval, ply), depth, bound);
+
+        return bestEval;
+    }
+
+    /**
+     * Quiescence search plays out captures at the leaves so the evaluation is never taken in the
+     * middle of an exchange, e.g. right after a queen took a defended pawn.
+     * The side to move can always decline to capture, so the static evaluation (stand pat) is a
+     * lower bound on the score; captures only need searching if they can raise it.
+     *
+     * @return - Evaluation of a quiet position from the perspective of the side to move
+     */
+    public int quiesce(Position position, int ply, int alpha, int beta) {
+        nodes++;
+        if (checkStop()) {
+            return 0;
+        }
+        // A long enough run of checks would walk off the end of the move buffers
+        if (ply >= MAX_PLY - 1) {
+            return evaluate(position);
+        }
+
+        // In check every evasion is searched, standing pat isn't an option
+        boolean inCheck = position.inCheck();
+        int[] moves = moveBuffers[ply];
+        int count;
+        int bestEval;
+        int standPat = 0;
+        if (inCheck) {
+            count = position.getAllPossibleMoves(moves);
+            if (count == 0) {
+                return -MATE + ply;
+            }
+            bestEval = MIN;
+        } else {
+            standPat = evaluate(position);
+            if (standPat >= beta) {
+                return standPat;
+            }
+            // Delta pruning, even winning a queen wouldn't get back to alpha
+            if (standPat + PIECE_VALUES[Position.QUEEN] + DELTA_MARGIN < alpha) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
+            bestEval = standPat;
+            count = position.getCaptures(moves);
+        }
+
+        ordering.score(position, moves, count, ply, PackedMove.NONE);
+
+        for (int i = 0; i < count; i++) {
+            int move = ordering.next(moves, count, i, ply);
+
+            if (!inCheck && !PackedMove.isPromotion(move)) {
+                // Delta pruning, this capture can't raise the score to alpha
+                int victim = PackedMove.isEnPassant(move) ? Position.PAWN : Position.typeOf(position.getPiece(PackedMove.to(move)));
+                if (standPat + PIECE_VALUES[victim] + DELTA_MARGIN <= alpha) {
+                    continue;
+                }
+                if (useSee && see(position, move) < 0) {
+                    continue;
+                }
+            }
+
+            position.movePiece(move);
+            int eval = - quiesce(position, ply + 1, -beta, -alpha);
+            position.undoLastMove();
+
+            if (stopped) {
+                return 0;
+            }
+            if (eval > bestEval) {
+                bestEval = eval;
+            }
+            alpha = Math.max(alpha, eval);
+            if (alpha >= beta) {
+                break;
+            }
+        }
+
+        return bestEval;
+    }
+
+    /**
+     * Static exchange evaluation: material won by a capture if both sides keep recapturing on the
+     * target square with their least valuable piece, and either side may stop when it's behind.
+     * Removing each capturer from the occupancy reveals sliders lined up behind it (x-rays).
+     */
+    public int see(Position position, int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        long occupied = position.getOccupancy();
+        int side = position.getSideToMove();
+        int attacker = Position.typeOf(position.getPiece(from));
+        long fromBit = 1L << from;
+
+        int depth = 0;
+        if (PackedMove.isEnPassant(move)) {
+            seeGain[0] = PIECE_VALUES[Position.PAWN];
+            occupied ^= 1L << (to + (side == Position.WHITE ? 8 : -8));
+        } else {
+            seeGain[0] = PIECE_VALUES[Position.typeOf(position.getPiece(to))];
+        }
+
+        while (true) {
+            depth++;
+            side = 1 - side;
+            // Score if the piece now standing on the target square gets taken
+            seeGain[depth] = PIECE_VALUES[attacker] - seeGain[depth - 1];
+            if (Math.max(-seeGain[depth - 1], seeGain[depth]) < 0 || depth == seeGain.length - 1) {
+                break; // neither side would continue
+            }
+            occupied ^= fromBit;
+
+            long attackers = position.attackersTo(to, side, occupied) & occupied;
+            if (attackers == 0) {
+                break;
+            }
+            for (attacker = Position.PAWN; attacker <= Position.KING; attacker++) {
+                long candidates = attackers & position.getPieces(side, attacker);
+                if (candidates != 0) {
+                    fromBit = candidates & -candidates;
+                    break;
+                }
+            }
+        }
+
+        // Each side picks the better of capturing or stopping, from the last capture back to the first
+        while (--depth > 0) {
+            seeGain[depth - 1] = -Math.max(-seeGain[depth - 1], seeGain[depth]);
+        }
+        return seeGain[0];
+    }
+
+    // Mate scores are stored relative to the position rather than the root, so they stay valid at any ply
+    static int toTT(int score, int ply) {
+        if (score > MATE - MAX_PLY) return score + ply;
+        if (score < -MATE + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    static int fromTT(int score, int ply) {
+        if (score > MATE - MAX_PLY) return score - ply;
+        if (score < -MATE + MAX_PLY) return score + ply;
+        return score;
+    }
+
+
+    // Always evaluate from the perspective of the side to move
+    public int evaluate(Position position) {
+        int us = position.getSideToMove();
+        int them = 1 - us;
+
+        /* Symmetric evaluation function:
+         * f(p) = 200(K-K')
+         *        + 9(Q-Q')
+         *        + 5(R-R')
+         *        + 3(B-B' + N-N')
+         *        + 1(P-P')
+         *        + (T-T')
+         *        - 0.5(D-D' + S-S' + I-I')
+         *        + 0.1(M-M') + ...
+         *
+         * KQRBNP = number of kings, queens, rooks, bishops, knights and pawns
+         * T = square bonuses of the pieces, blended between middlegame and endgame by the game phase
+         * D,S,I = doubled, blocked and isolated pawns
+         * M = Mobility (the number of squares the pieces attack, see countMobility)
+         *
+         * Material and square bonuses are kept up to date by Position as moves are made and undone.
+         */
+
+        int material = position.getMaterial(us) - position.getMaterial(them);
+
+        int phase = Math.min(position.getPhase(), PieceSquareTables.MAX_PHASE);
+        int midgame = position.getMidgameBonus(us) - position.getMidgameBonus(them);
+        int endgame = position.getEndgameBonus(us) - position.getEndgameBonus(them);
+        int squares = (midgame * phase + endgame * (PieceSquareTables.MAX_PHASE - phase)) / PieceSquareTables.MAX_PHASE;
+
+        int pawnStructure = blockedPawns(position, us) - blockedPawns(position, them);
+        int pawnFiles = pawnFileWeaknesses(position);
+        pawnStructure += us == Position.WHITE ? pawnFiles : -pawnFiles;
+
+        // Update mobility
+        int mobility = countMobility(position, us == Position.WHITE);
+        int mobilityE = countMobility(position, them == Position.WHITE);
+
+        return material + squares - 5 * pawnStructure + 1 * (mobility - mobilityE);
+    }
+
+    // blocked pawns - pawns that can't move forward because another piece (regardless of color) is directly in front of it
+    private int blockedPawns(Position position, int color) {
+        long pawns = position.getPieces(color, Position.PAWN);
+        long inFront = color == Position.WHITE ? pawns >>> 8 : pawns << 8;
+        return Long.bitCount(inFront & position.getOccupancy());
+    }
+
+    /*
+     * Doubled and isolated pawns of white minus those of black. They only depend on where the pawns are,
+     * which rarely changes between leaves, so they're cached by the position's pawn hash.
+     * An empty slot (key 0, score 0) is also the right answer for a board without pawns.
+     */
+    private int pawnFileWeaknesses(Position position) {
+        long key = position.getPawnKey();
+        int index = (int) key & (PAWN_CACHE_SIZE - 1);
+        if (pawnKeys[index] == key) {
+            return pawnScores[index];
+        }
+        int score = pawnFileWeaknesses(position, Position.WHITE) - pawnFileWeaknesses(position, Position.BLACK);
+        pawnKeys[index] = key;
+        pawnScores[index] = score;
+        return score;
+    }
+
+    // Counts doubled and isolated pawns of one side
+    private int pawnFileWeaknesses(Position position, int color) {
+        long pawns = position.getPieces(color, Position.PAWN);
+        int count = 0;
+        for (int col = 0; col < 8; col++) {
+            int onFile = Long.bitCount(pawns & FILES[col]);
+            if (onFile == 0) {
+                continue;
+            }
+            // double pawns - when two or more pawns of same color are on the same column
+            count += onFile - 1;
+
+            // isolated pawns - pawns that don't have any pawns on their left column and right column
+            long neighbours = (col > 0 ? FILES[col - 1] : 0) | (col < 7 ? FILES[col + 1] : 0);
+            if ((pawns & neighbours) == 0) {
+                count += onFile;
+            }
+        }
+        return count;
+    }
+
+    private static final long[] FILES = new long[8];
+    static {
+        for (int col = 0; col < 8; col++) {
+            FILES[col] = 0x0101010101010101L << col;
+        }
+    }
+
+    /*
+     * Pseudo-legal mobility: squares each piece attacks that aren't taken by its own side, counted from the
+     * attack sets without generating or playing any moves. Pieces other than pawns and the king don't get
+     * credit for squares covered by enemy pawns, since moving there usually just loses the piece.
+     * Pawns count their pushes and captures.
+     */
+    public int countMobility(Position position, boolean color) {
+        int us = color ? Position.WHITE : Position.BLACK;
+        int them = 1 - us;
+        long occupied = position.getOccupancy();
+        long own = position.getColorOccupancy(us);
+        long safe = ~own & ~pawnAttacks(them, position.getPieces(them, Position.PAWN));
+
+        long pawns = position.getPieces(us, Position.PAWN);
+        long pushes = us == Position.WHITE ? pawns >>> 8 : pawns << 8;
+        int mobility = Long.bitCount(pushes & ~occupied)
+                + Long.bitCount(pawnAttacks(us, pawns) & position.getColorOccupancy(them));
+
+        for (long knights = position.getPieces(us, Position.KNIGHT); knights != 0; knights &= knights - 1) {
+            mobility += Long.bitCount(Attacks.knightAttacks(Long.numberOfTrailingZeros(knights)) & safe);
+        }
+        for (long bishops = position.getPieces(us, Position.BISHOP); bishops != 0; bishops &= bishops - 1) {
+            mobility += Long.bitCount(Attacks.bishopAttacks(Long.numberOfTrailingZeros(bishops), occupied) & safe);
+        }
+        for (long rooks = position.getPieces(us, Position.ROOK); rooks != 0; rooks &= rooks - 1) {
+            mobility += Long.bitCount(Attacks.rookAttacks(Long.numberOfTrailingZeros(rooks), occupied) & safe);
+        }
+        for (long queens = position.getPieces(us, Position.QUEEN); queens != 0; queens &= queens - 1) {
+            mobility += Long.bitCount(Attacks.queenAttacks(Long.numberOfTrailingZeros(queens), occupied) & safe);
+        }
+        long king = position.getPieces(us, Position.KING);
+        if (king != 0) {
+            mobility += Long.bitCount(Attacks.kingAttacks(Long.numberOfTrailingZeros(king)) & ~own);
+        }
+        return mobility;
+    }
+
+    // All squares attacked by a set of pawns, white pawns attack towards row 0
+    private static long pawnAttacks(int color, long pawns) {
+        long left = pawns & ~FILES[0];
+        long right = pawns & ~FILES[7];
+        return color == Position.WHITE ? left >>> 9 | right >>> 7 : left << 7 | right << 9;
+    }
+}
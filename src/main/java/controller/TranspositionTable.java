@@ -0,0 +1,120 @@
+package controller;
+
+import java.util.Arrays;
+
+/**
+ * Hashtable of previously searched positions, indexed by Zobrist key.
+ * Stored in two primitive arrays so the table never creates objects: keys[i] identifies the
+ * position of an entry (to tell apart positions sharing a slot) and data[i] packs
+ *
+ * bits 0-31  best move (PackedMove)
+ * bits 32-47 score
+ * bits 48-55 search depth
+ * bits 56-57 bound type
+ * bits 58-63 age of the search that stored it
+ *
+ * Each bucket has two entries: the first keeps the deepest (most expensive) result and
+ * is only replaced by an equal or deeper search, or by anything once it's from an old search;
+ * the second is always replaced, so recent shallow results still get stored.
+ *
+ * The table is shared by all search threads without locking. Each slot stores key XOR data, so
+ * if two threads write the same slot at once and a reader sees the key of one and the data of the
+ * other, the key check fails and the slot reads as empty instead of returning a mixed up entry.
+ */
+public class TranspositionTable {
+
+    // Bound types, a stored score is exact or only known to be above (LOWER) or below (UPPER) it
+    public static final int UPPER = 1;
+    public static final int LOWER = 2;
+    public static final int EXACT = 3;
+
+    public static final long EMPTY = 0L;
+
+    private static final int ENTRY_BYTES = 16;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private int age;
+
+    // Size is rounded down to a power of two number of buckets so the index is a mask
+    public TranspositionTable(int sizeMb) {
+        long entries = Math.max(2, (long) sizeMb * 1024 * 1024 / ENTRY_BYTES);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / 2, 1 << 30));
+        keys = new long[buckets * 2];
+        data = new long[buckets * 2];
+        bucketMask = buckets - 1;
+    }
+
+    // Returns the packed entry for the position, or EMPTY if it was never stored (or overwritten)
+    public long probe(long key) {
+        int index = index(key);
+        for (int i = index; i < index + 2; i++) {
+            long entry = data[i];
+            if ((keys[i] ^ entry) == key && entry != EMPTY) {
+                return entry;
+            }
+        }
+        return EMPTY;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = index(key);
+        long entry = (move & 0xFFFFFFFFL)
+                | (score & 0xFFFFL) << 32
+                | (long) (depth & 0xFF) << 48
+                | (long) bound << 56
+                | (long) age << 58;
+
+        // Keep the best move of the previous search if this one didn't find any
+        if (move == 0) {
+            entry |= probe(key) & 0xFFFFFFFFL;
+        }
+
+        long deepest = data[index];
+        boolean samePosition = (keys[index] ^ deepest) == key;
+        if (deepest == EMPTY || samePosition || age(deepest) != age || depth >= depth(deepest)) {
+            data[index] = entry;
+            keys[index] = key ^ entry;
+        } else {
+            data[index + 1] = entry;
+            keys[index + 1] = key ^ entry;
+        }
+    }
+
+    // Called before each new search so entries from earlier moves can be replaced first
+    public void newSearch() {
+        age = (age + 1) & 63;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, EMPTY);
+    }
+
+    private int index(long key) {
+        return ((int) key & bucketMask) * 2;
+    }
+
+    /* Decoding packed entries **/
+
+    public static int move(long entry) {
+        return (int) entry;
+    }
+
+    public static int score(long entry) {
+        return (short) (entry >>> 32);
+    }
+
+    public static int depth(long entry) {
+        return (int) (entry >>> 48) & 0xFF;
+    }
+
+    public static int bound(long entry) {
+        return (int) (entry >>> 56) & 3;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> 58) & 63;
+    }
+}
@@ -0,0 +1,367 @@
+package controller;
+
+import model.PackedMove;
+import model.Position;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless front end speaking the Universal Chess Interface (UCI), so the engine can be run by
+ * match managers and chess GUIs, or on a server without a display. Commands are read from stdin
+ * and answers written to stdout. Only the bitboard Position and the searches are used, nothing
+ * from the view, so starting it never touches Swing or loads an image.
+ *
+ * Supported: uci, isready, ucinewgame, setoption (Hash, Threads, BookFile), position (startpos/fen, moves),
+ * go (depth, movetime, wtime/btime/winc/binc/movestogo, nodes, infinite), stop and quit.
+ *
+ * Usage: java controller.UciEngine
+ */
+public class UciEngine {
+
+    static final int DEFAULT_HASH_SIZE = 16;
+    static final int MAX_HASH_SIZE = 4096;
+    static final int MAX_THREADS = 256;
+
+    // Kept back from the clock for the time it takes to read and send moves
+    static final long MOVE_OVERHEAD_MS = 50;
+    // Moves the remaining clock is expected to last when the GUI doesn't say
+    static final int DEFAULT_MOVES_TO_GO = 30;
+    // Think time for a go command that couldn't be read, so a bad clock never means no limit
+    static final long FALLBACK_MOVE_TIME_MS = 1000;
+
+    private final BufferedReader in;
+    private final PrintStream out;
+
+    private TranspositionTable tt = new TranspositionTable(DEFAULT_HASH_SIZE);
+    private final AtomicBoolean stop = new AtomicBoolean();
+    // Set by the GUI's stop, unlike the search's own stop flag which is also set when it finishes
+    private volatile boolean stopRequested;
+    private Search[] searches;
+    private OpeningBook book;
+
+    private Position position = new Position();
+    private Thread searchThread;
+
+    public UciEngine(BufferedReader in, PrintStream out) {
+        this.in = in;
+        this.out = out;
+        setThreads(1);
+    }
+
+    public static void main(String[] args) throws IOException {
+        new UciEngine(new BufferedReader(new InputStreamReader(System.in)), System.out).run();
+    }
+
+    // Reads commands until quit or the end of the input
+    public void run() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!command(line)) {
+                break;
+            }
+        }
+        stopSearch();
+    }
+
+    /**
+     * Handles one command line. Searches run in the background so stop and isready are answered
+     * while they think, any other command first stops the running search.
+     *
+     * @return - false once the GUI asked to quit
+     */
+    public boolean command(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        switch (tokens[0]) {
+            case "uci" -> {
+                send("id name JavaChessGame");
+                send("id author eimaneltigani");
+                send("option name Hash type spin default " + DEFAULT_HASH_SIZE + " min 1 max " + MAX_HASH_SIZE);
+                send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                send("option name BookFile type string default <empty>");
+                send("uciok");
+            }
+            case "isready" -> send("readyok");
+            case "ucinewgame" -> {
+                stopSearch();
+                tt.clear();
+            }
+            case "setoption" -> {
+                stopSearch();
+                setOption(tokens);
+            }
+            case "position" -> {
+                stopSearch();
+                setPosition(tokens);
+            }
+            case "go" -> {
+                stopSearch();
+                go(tokens);
+            }
+            case "stop" -> stopSearch();
+            case "quit" -> {
+                return false;
+            }
+            default -> { } // unknown commands are ignored, as the protocol asks
+        }
+        return true;
+    }
+
+    // Blocks until the running search, if any, has sent its best move
+    public void waitForSearch() {
+        if (searchThread == null) {
+            return;
+        }
+        try {
+            searchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Restore interrupted status
+        }
+        searchThread = null;
+    }
+
+    private void stopSearch() {
+        stop.set(true);
+        stopRequested = true;
+        if (searchThread != null) {
+            LockSupport.unpark(searchThread); // an infinite search may be holding its best move
+        }
+        waitForSearch();
+    }
+
+    // setoption name <name> value <value>, names are case insensitive and values may hold spaces
+    private void setOption(String[] tokens) {
+        String name = null;
+        String value = null;
+        for (int i = 1; i < tokens.length - 1; i++) {
+            if (tokens[i].equals("name")) {
+                name = tokens[i + 1];
+            } else if (tokens[i].equals("value")) {
+                value = String.join(" ", Arrays.copyOfRange(tokens, i + 1, tokens.length));
+                break;
+            }
+        }
+        if (name == null || value == null) {
+            return;
+        }
+
+        try {
+            if (name.equalsIgnoreCase("Hash")) {
+                tt = new TranspositionTable(clamp(Integer.parseInt(value), 1, MAX_HASH_SIZE));
+                setThreads(searches.length); // the searches hold on to the old table
+            } else if (name.equalsIgnoreCase("Threads")) {
+                setThreads(clamp(Integer.parseInt(value), 1, MAX_THREADS));
+            } else if (name.equalsIgnoreCase("BookFile")) {
+                book = value.equals("<empty>") ? null : new OpeningBook(Path.of(value));
+            }
+        } catch (NumberFormatException | IOException e) {
+            send("info string invalid value for " + name + ": " + value);
+        }
+    }
+
+    private void setThreads(int threads) {
+        searches = new Search[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new Search(tt, stop);
+        }
+    }
+
+    // position [startpos | fen <fen>] [moves <move>...]
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        Position next;
+        if (i < tokens.length && tokens[i].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            for (i++; i < tokens.length && !tokens[i].equals("moves"); i++) {
+                fen.append(tokens[i]).append(' ');
+            }
+            try {
+                next = new Position(fen.toString());
+            } catch (RuntimeException e) {
+                send("info string invalid fen: " + fen.toString().trim());
+                return;
+            }
+        } else {
+            next = new Position();
+            i++;
+        }
+
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                int move = findMove(next, tokens[i]);
+                if (move == PackedMove.NONE) {
+                    send("info string illegal move: " + tokens[i]);
+                    break;
+                }
+                next.movePiece(move);
+            }
+        }
+        // Moves can't be taken back over UCI, so the search works on a copy without the history
+        position = new Position(next);
+    }
+
+    // Legal move written in coordinate notation, or NONE
+    private static int findMove(Position position, String text) {
+        for (int move : position.getAllPossibleMoves()) {
+            if (PackedMove.toString(move).equals(text)) {
+                return move;
+            }
+        }
+        return PackedMove.NONE;
+    }
+
+    private void go(String[] tokens) {
+        int depth = Search.MAX_DEPTH;
+        long nodes = Long.MAX_VALUE;
+        long moveTime = -1;
+        long[] time = {-1, -1};
+        long[] increment = {0, 0};
+        int movesToGo = 0;
+        boolean infinite = false;
+
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "depth" -> depth = clamp(Integer.parseInt(tokens[++i]), 1, Search.MAX_DEPTH);
+                    case "nodes" -> nodes = parseLimit(tokens[++i]);
+                    case "movetime" -> moveTime = parseLimit(tokens[++i]);
+                    case "wtime" -> time[Position.WHITE] = parseLimit(tokens[++i]);
+                    case "btime" -> time[Position.BLACK] = parseLimit(tokens[++i]);
+                    case "winc" -> increment[Position.WHITE] = parseLimit(tokens[++i]);
+                    case "binc" -> increment[Position.BLACK] = parseLimit(tokens[++i]);
+                    case "movestogo" -> movesToGo = (int) Math.min(parseLimit(tokens[++i]), Integer.MAX_VALUE);
+                    case "infinite" -> infinite = true;
+                    default -> { } // searchmoves and ponder aren't supported
+                }
+            }
+        } catch (RuntimeException e) {
+            // Limits read so far may leave the search unbounded, think for a fixed time instead
+            send("info string invalid go command, searching for " + FALLBACK_MOVE_TIME_MS + " ms");
+            depth = Search.MAX_DEPTH;
+            nodes = Long.MAX_VALUE;
+            moveTime = FALLBACK_MOVE_TIME_MS;
+            infinite = false;
+        }
+
+        // Book moves are played at once, unless the GUI wants the engine to analyse
+        int bookMove = book == null || infinite ? PackedMove.NONE : book.probe(position);
+        if (bookMove != PackedMove.NONE) {
+            send("bestmove " + PackedMove.toString(bookMove));
+            return;
+        }
+
+        // Time for this move in milliseconds, -1 for no limit
+        int us = position.getSideToMove();
+        long budget = -1;
+        if (!infinite && moveTime >= 0) {
+            budget = moveTime;
+        } else if (!infinite && time[us] >= 0) {
+            budget = timeForMove(time[us], increment[us], movesToGo);
+        }
+        long timeLimit = budget < 0 ? Long.MAX_VALUE : Math.max(1, budget) * 1_000_000;
+
+        Position root = new Position(position);
+        int maxDepth = depth;
+        long nodeLimit = nodes;
+        boolean untilStop = infinite;
+        stop.set(false);
+        stopRequested = false;
+        searchThread = new Thread(() -> search(root, maxDepth, timeLimit, nodeLimit, untilStop), "uci-search");
+        searchThread.start();
+    }
+
+    /*
+     * Share of the clock given to one move: the remaining time split over the moves left to the
+     * next time control (or a typical number of moves), plus most of the increment.
+     */
+    static long timeForMove(long time, long increment, int movesToGo) {
+        long budget = time / (movesToGo > 0 ? movesToGo : DEFAULT_MOVES_TO_GO) + increment * 3 / 4;
+        return Math.max(1, Math.min(budget, time - MOVE_OVERHEAD_MS));
+    }
+
+    /*
+     * Runs the search and sends its best move. nodeLimit is shared out between the threads, the
+     * first to use up its share stops the others. An infinite search that finishes early (a mate,
+     * or the depth limit) holds its move until the GUI sends stop, as the protocol requires.
+     */
+    private void search(Position root, int maxDepth, long timeLimit, long nodeLimit, boolean infinite) {
+        long start = System.nanoTime();
+        tt.newSearch();
+
+        for (Search search : searches) {
+            search.nodes = 0; // helpers may not have started counting when the first iteration reports
+            search.nodeLimit = nodeLimit == Long.MAX_VALUE ? nodeLimit : Math.max(1, nodeLimit / searches.length);
+        }
+        Search main = searches[0];
+        int[] pv = new int[Search.MAX_PLY];
+        main.listener = (position, depth, score, bestMove) -> {
+            long time = Math.max(1, System.nanoTime() - start);
+            long nodes = countNodes();
+            StringBuilder info = new StringBuilder("info depth ").append(depth)
+                    .append(" score ").append(scoreString(score))
+                    .append(" nodes ").append(nodes)
+                    .append(" nps ").append(nodes * 1_000_000_000L / time)
+                    .append(" time ").append(time / 1_000_000)
+                    .append(" pv");
+            int length = main.principalVariation(position, bestMove, pv);
+            for (int i = 0; i < length; i++) {
+                info.append(' ').append(PackedMove.toString(pv[i]));
+            }
+            send(info.toString());
+        };
+
+        int bestMove = Search.iterateLazySmp(searches, root, maxDepth, timeLimit);
+        main.listener = null;
+        for (Search search : searches) {
+            search.nodeLimit = Long.MAX_VALUE;
+        }
+        while (infinite && !stopRequested) {
+            LockSupport.park(this);
+        }
+
+        send("bestmove " + (bestMove == PackedMove.NONE ? "0000" : PackedMove.toString(bestMove)));
+    }
+
+    private long countNodes() {
+        long total = 0;
+        for (Search search : searches) {
+            total += search.nodes;
+        }
+        return total;
+    }
+
+    // Evaluation units are tenths of a pawn, UCI wants centipawns or moves to mate
+    static String scoreString(int score) {
+        if (score >= Search.MATE - Search.MAX_PLY) {
+            return "mate " + (Search.MATE - score + 1) / 2;
+        }
+        if (score <= -Search.MATE + Search.MAX_PLY) {
+            return "mate " + -((Search.MATE + score) / 2);
+        }
+        return "cp " + score * 10;
+    }
+
+    private synchronized void send(String line) {
+        out.println(line);
+        out.flush();
+    }
+
+    // Times, increments and counts of go, a negative one is as invalid as a missing one
+    private static long parseLimit(String token) {
+        long value = Long.parseLong(token);
+        if (value < 0) {
+            throw new NumberFormatException("Negative limit: " + token);
+        }
+        return value;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,231 @@
+package model;
+
+/**
+ * Precomputed attack sets for every square, returned as bitboards (bit n = square n).
+ * Leaper attacks (pawn, knight, king) never depend on other pieces so they are
+ * looked up directly. Sliding attacks use magic bitboards: the blockers on a slider's
+ * rays are multiplied by a "magic" number that maps every blocker combination to a
+ * unique index into a table of precomputed attacks, so any lookup is a single multiply.
+ * The magic numbers below were found by trial and error against the ray walker.
+ */
+public final class Attacks {
+
+    private static final int[][] KNIGHT_DIRECTIONS = {
+            {-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}
+    };
+    private static final int[][] KING_DIRECTIONS = {
+            {-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {-1, 1}, {1, -1}, {1, 1}
+    };
+    private static final int[][] ROOK_DIRECTIONS = {
+            {-1, 0}, {1, 0}, {0, -1}, {0, 1}
+    };
+    private static final int[][] BISHOP_DIRECTIONS = {
+            {-1, -1}, {-1, 1}, {1, -1}, {1, 1}
+    };
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    private static final long[] ROOK_MAGICS = {
+            0x248000A040048210L, 0x00C0300020004000L, 0x8200220008801041L, 0x0080080010008006L,
+            0x2080080080020400L, 0x1280040001800200L, 0x0200410200008408L, 0x4100010000803042L,
+            0x0012002200804104L, 0x0002400020005000L, 0x8060801000200080L, 0x0102000A04104020L,
+            0x0001000411000800L, 0x6502800400800200L, 0x2000800200010080L, 0x00650004A200CB00L,
+            0x0920818000E14000L, 0x8040004020100040L, 0x8260808020001004L, 0x00020200082093C0L,
+            0x0800050010080100L, 0x4002808002000400L, 0x1854040001085290L, 0x008012000041941BL,
+            0x0080004240042000L, 0x4040008280200140L, 0x04A0080040100040L, 0x0048100080080080L,
+            0x2000040080800800L, 0x801A000600080430L, 0x0005000101020004L, 0x0001000100009062L,
+            0x8020804000800020L, 0x8200400080802000L, 0x0210001080802000L, 0x2200800801805000L,
+            0x0000080101000410L, 0x58C4000802020010L, 0x000008021C003009L, 0x1820040042000099L,
+            0x8B80002000404010L, 0x8050002000404000L, 0xA020001100210040L, 0x1000420220D20008L,
+            0x800A040008008080L, 0x9004000402008080L, 0x2000DA0108240010L, 0x081000A041020004L,
+            0x40800904B0408100L, 0x4402802000400680L, 0x8008402006110100L, 0x0400100008210100L,
+            0x0400080004008080L, 0xA900842040900801L, 0x0800102882010400L, 0x08C00408A0451200L,
+            0x0000208001001041L, 0x200080102042010AL, 0x00430010402CA001L, 0x0053000420081001L,
+            0x0206000420081002L, 0x0881004804000231L, 0x0008221040A80104L, 0x0402040080402902L
+    };
+    private static final long[] BISHOP_MAGICS = {
+            0x22040102020C0100L, 0x0004102082008404L, 0x8214544082000044L, 0x4002408104840080L,
+            0x5054142004008404L, 0x0022020222411840L, 0x1800441004110008L, 0x2008240208010884L,
+            0x0022086001120201L, 0x0804080890940240L, 0x0002100100610200L, 0x1000080481108000L,
+            0x4104062110808040L, 0x0100110402400820L, 0x000080480804100AL, 0x0240008E01012089L,
+            0x020400C038882100L, 0x00880120481CC080L, 0x0110820908008100L, 0x2002002020224040L,
+            0x524E222400A00200L, 0x1581000200820144L, 0x41010108AC100200L, 0x01890200404A1054L,
+            0x0044418620020400L, 0x8038080222420800L, 0x004310020900C202L, 0x081400215400A080L,
+            0x000C848004002000L, 0x8008008000406000L, 0x200A0040108C1011L, 0x0000809002060080L,
+            0x211010084C100240L, 0x0844100243088228L, 0x0400403008020400L, 0xE090208020080200L,
+            0x0840020201922080L, 0x0028101408264100L, 0xA088011049010800L, 0x4009184202030104L,
+            0x1002084404004040L, 0x08004824300A0440L, 0x0941704428011004L, 0x0000224200900802L,
+            0x0120404408200900L, 0x2002121003020608L, 0x8404188224000240L, 0x0001020081000210L,
+            0x0204012130110580L, 0x1000210410044000L, 0x1010004208040220L, 0x0001004084040080L,
+            0x0000101002088020L, 0x0402A0045002202AL, 0x1520080101140804L, 0x0108010104010800L,
+            0x8020848890100203L, 0x1820004900C82000L, 0x1019000024941040L, 0x3280801024840400L,
+            0x2019180850020220L, 0x0004004022448100L, 0x04800404105C0310L, 0x4240010204010020L
+    };
+
+    // Magic lookup tables for sliding pieces
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    // Squares strictly between two aligned squares, and the full line through them
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            KNIGHT[sq] = leaperAttacks(sq, KNIGHT_DIRECTIONS);
+            KING[sq] = leaperAttacks(sq, KING_DIRECTIONS);
+            // White pawns move up the board (towards row 0), black pawns move down
+            PAWN[Position.WHITE][sq] = leaperAttacks(sq, new int[][]{{-1, -1}, {-1, 1}});
+            PAWN[Position.BLACK][sq] = leaperAttacks(sq, new int[][]{{1, -1}, {1, 1}});
+
+            initMagic(sq, ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_TABLE);
+            initMagic(sq, BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_TABLE);
+        }
+
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                long bBit = 1L << b;
+                if ((rookAttacks(a, 0L) & bBit) != 0) {
+                    BETWEEN[a][b] = rookAttacks(a, bBit) & rookAttacks(b, 1L << a);
+                    LINE[a][b] = (rookAttacks(a, 0L) & rookAttacks(b, 0L)) | (1L << a) | bBit;
+                } else if ((bishopAttacks(a, 0L) & bBit) != 0) {
+                    BETWEEN[a][b] = bishopAttacks(a, bBit) & bishopAttacks(b, 1L << a);
+                    LINE[a][b] = (bishopAttacks(a, 0L) & bishopAttacks(b, 0L)) | (1L << a) | bBit;
+                }
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING[square];
+    }
+
+    // Squares attacked by a pawn of the given color standing on square
+    public static long pawnAttacks(int color, int square) {
+        return PAWN[color][square];
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        int index = (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square]);
+        return ROOK_TABLE[square][index];
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        int index = (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square]);
+        return BISHOP_TABLE[square][index];
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    // Squares strictly between a and b if they share a row, column or diagonal, otherwise empty
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    // Every square of the row, column or diagonal through a and b, otherwise empty
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    private static long leaperAttacks(int square, int[][] directions) {
+        long attacks = 0L;
+        int row = square >>> 3;
+        int col = square & 7;
+        for (int[] direction : directions) {
+            int targetRow = row + direction[0];
+            int targetCol = col + direction[1];
+            if (isWithinBounds(targetRow, targetCol)) {
+                attacks |= 1L << (targetRow * 8 + targetCol);
+            }
+        }
+        return attacks;
+    }
+
+    /*
+     * Fill the attack table of one square. Only blockers on the rays matter, and the last
+     * square of each ray can be ignored since it is attacked whether occupied or not.
+     * Every subset of that mask must map to an index holding its own attack set (or one that
+     * happens to be identical), which the magic number guarantees.
+     */
+    private static void initMagic(int square, int[][] directions,
+                                  long[] masks, long[] magics, int[] shifts, long[][] tables) {
+        long mask = relevantBlockers(square, directions);
+        int bits = Long.bitCount(mask);
+        long[] table = new long[1 << bits];
+        boolean[] used = new boolean[table.length];
+
+        // Enumerate all blocker subsets of the mask
+        long subset = 0L;
+        do {
+            long attacks = slidingAttacks(square, subset, directions);
+            int index = (int) ((subset * magics[square]) >>> (64 - bits));
+            if (used[index] && table[index] != attacks) {
+                throw new IllegalStateException("Invalid magic for square " + square);
+            }
+            used[index] = true;
+            table[index] = attacks;
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+
+        masks[square] = mask;
+        shifts[square] = 64 - bits;
+        tables[square] = table;
+    }
+
+    // Squares on each ray whose occupancy can block the slider, excluding the board edge
+    private static long relevantBlockers(int square, int[][] directions) {
+        long mask = 0L;
+        int row = square >>> 3;
+        int col = square & 7;
+        for (int[] direction : directions) {
+            int nextRow = row + direction[0];
+            int nextCol = col + direction[1];
+            while (isWithinBounds(nextRow + direction[0], nextCol + direction[1])) {
+                mask |= 1L << (nextRow * 8 + nextCol);
+                nextRow += direction[0];
+                nextCol += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    // Walk each ray until blocked, including the blocking square itself
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        int row = square >>> 3;
+        int col = square & 7;
+        for (int[] direction : directions) {
+            int nextRow = row + direction[0];
+            int nextCol = col + direction[1];
+            while (isWithinBounds(nextRow, nextCol)) {
+                long bit = 1L << (nextRow * 8 + nextCol);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                nextRow += direction[0];
+                nextCol += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static boolean isWithinBounds(int row, int col) {
+        return row >= 0 && row < 8 && col >= 0 && col < 8;
+    }
+}
@@ -3,7 +3,6 @@ package model;
 import model.pieces.*;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Stack;
 
@@ -23,12 +22,98 @@ public class Board {
     private Stack<Move> lastMoves;
     private King whiteKing;
     private King blackKing;
+    private long whiteOccupancy; // bitboards of occupied squares, bit = row * 8 + col
+    private long blackOccupancy;
+    private final long[] pieces = new long[12]; // one bitboard per piece code, as in Position
+    private boolean whiteToMove = true;
+    private long zobristKey;
+    private int halfmoveClock = 0; // moves since the last capture or pawn move, for the 50 move rule
+    private int fullmoveNumber = 1;
+    private final Stack<Integer> halfmoveHistory = new Stack<>();
+    // En passant square given by a FEN, until the first move is played
+    private int startEnPassantSquare = -1;
 
 
     public Board() {
         board = new Piece[8][8]; // Define chess board as 2D array
         initializeBoard();
         populateLists();
+        zobristKey = computeZobristKey();
+    }
+
+    /**
+     * Board set up from a FEN string (https://www.chessprogramming.org/Forsyth-Edwards_Notation),
+     * e.g. "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1". The move counters are optional.
+     * Piece state the FEN implies is filled in: pawns off their starting row have made their first move,
+     * and kings and rooks that lost their castling rights are given a move in their history.
+     */
+    public Board(String fen) {
+        // Position does the parsing and validation, the pieces are then created from its squares
+        Position position = new Position(fen);
+        board = new Piece[8][8];
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                int piece = position.findPieceByLocation(row, col);
+                if (piece == Position.EMPTY) {
+                    continue;
+                }
+                Piece p = createPiece(piece, row, col);
+                board[row][col] = p;
+                if (p instanceof King king) {
+                    if (king.isWhite()) {
+                        whiteKing = king;
+                    } else {
+                        blackKing = king;
+                    }
+                } else if (p instanceof Pawn pawn) {
+                    pawn.setFirstMove(row == (pawn.isWhite() ? 6 : 1));
+                }
+            }
+        }
+        if (whiteKing == null || blackKing == null) {
+            throw new IllegalArgumentException("Invalid FEN, each side needs one king: " + fen);
+        }
+        populateLists();
+
+        int rights = position.getCastlingRights();
+        if ((rights & (Position.WHITE_KINGSIDE | Position.WHITE_QUEENSIDE)) == 0) markMoved(whiteKing);
+        if ((rights & (Position.BLACK_KINGSIDE | Position.BLACK_QUEENSIDE)) == 0) markMoved(blackKing);
+        if ((rights & Position.WHITE_KINGSIDE) == 0) markMoved(board[7][7]);
+        if ((rights & Position.WHITE_QUEENSIDE) == 0) markMoved(board[7][0]);
+        if ((rights & Position.BLACK_KINGSIDE) == 0) markMoved(board[0][7]);
+        if ((rights & Position.BLACK_QUEENSIDE) == 0) markMoved(board[0][0]);
+
+        whiteToMove = position.isWhiteToMove();
+        startEnPassantSquare = position.getEnPassantSquare();
+        halfmoveClock = position.getHalfmoveClock();
+        fullmoveNumber = position.getFullmoveNumber();
+        zobristKey = computeZobristKey();
+    }
+
+    private static Piece createPiece(int piece, int row, int col) {
+        boolean white = Position.colorOf(piece) == Position.WHITE;
+        return switch (Position.typeOf(piece)) {
+            case Position.PAWN -> new Pawn(white, row, col);
+            case Position.KNIGHT -> new Knight(white, row, col);
+            case Position.BISHOP -> new Bishop(white, row, col);
+            case Position.ROOK -> new Rook(white, row, col);
+            case Position.QUEEN -> new Queen(white, row, col);
+            default -> new King(white, row, col);
+        };
+    }
+
+    // A king or rook that has moved before the game was loaded, it can no longer castle
+    private void markMoved(Piece p) {
+        if (p instanceof King king) {
+            king.addMove(new Move(king, king.getRow(), king.getCol()));
+        } else if (p instanceof Rook rook) {
+            rook.addMove(new Move(rook, rook.getRow(), rook.getCol()));
+        }
+    }
+
+    // FEN of the current position, the reverse of Board(String fen)
+    public String toFen() {
+        return new Position(this).toFen();
     }
 
     // Initializes board to classic chess start position
@@ -97,6 +182,7 @@ public class Board {
         for (int row = 0; row < 8; row++) {
             for (int col = 0; col < 8; col++) {
                 Piece p = board[row][col];
+                setSquare(row, col, p);
                 if(p != null) {
                     if(p.isWhite()) {
                         whitePieces.add(p);
@@ -117,47 +203,74 @@ public class Board {
         return board[row][col];
     }
 
+    // Updates grid, occupancy and piece bitboards and hash together
+    private void setSquare(int row, int col, Piece p) {
+        int square = Position.square(row, col);
+        if (board[row][col] != null) {
+            zobristKey ^= Zobrist.piece(Position.pieceOf(board[row][col]), square);
+        }
+        if (p != null) {
+            zobristKey ^= Zobrist.piece(Position.pieceOf(p), square);
+        }
+        board[row][col] = p;
+        long bit = 1L << square;
+        whiteOccupancy &= ~bit;
+        blackOccupancy &= ~bit;
+        for (int piece = 0; piece < pieces.length; piece++) {
+            pieces[piece] &= ~bit;
+        }
+        if (p != null) {
+            pieces[Position.pieceOf(p)] |= bit;
+            if (p.isWhite()) {
+                whiteOccupancy |= bit;
+            } else {
+                blackOccupancy |= bit;
+            }
+        }
+    }
+
 
-    // Function to eliminate the possible moves that will put the king in danger
+    // Legal moves come from the bitboard generator, which handles pins and checks directly
     public HashMap<Piece, ArrayList<int[]>> getAllPossibleMoves(boolean color) {
         HashMap<Piece, ArrayList<int[]>> map = new HashMap<>();
-        ArrayList<Piece> playerPieces = new ArrayList<>(color ? whitePieces : blackPieces); // Cloning Collections for Safe Iteration
-
-        for (Piece p : playerPieces) {
-            ArrayList<int[]> legalMoves = new ArrayList<>();
-            // Generate ALL moves of a given piece first
-            ArrayList<int[]> pseudoLegalMoves = new ArrayList<>(p.availableMoves(this)); // Create copy of moves
-            // Add to legal moves after checking that it is safe
-            for (int[] move : pseudoLegalMoves) {
-                if (!putsKingInDanger(p, move[0], move[1])) {
-                    legalMoves.add(move);
-                }
-            }
-            if(!legalMoves.isEmpty()) {
-                map.put(p, legalMoves);
+        Position position = new Position(this, color);
+
+        for (int move : position.getAllPossibleMoves(color)) {
+            int promotion = PackedMove.promotion(move);
+            if (promotion != 0 && promotion != Position.QUEEN) {
+                continue; // promotion piece is picked after the pawn reaches the last row
             }
+            int from = PackedMove.from(move);
+            int to = PackedMove.to(move);
+            Piece p = board[Position.row(from)][Position.col(from)];
+            map.computeIfAbsent(p, k -> new ArrayList<>()).add(new int[]{Position.row(to), Position.col(to)});
         }
 
         return map;
     }
 
-    // Function to check if moving a piece will put players king in danger
-    private boolean putsKingInDanger(Piece p, int targetRow, int targetCol) {
-        boolean inCheck = false;
-
-        movePiece(new Move(p, targetRow, targetCol)); // simulate move
-
-        if (inCheck(p.isWhite())) {
-            inCheck = true;
+    public void movePiece(Move move) {
+        // Castling rights and en passant are hashed once for the whole move,
+        // piece changes are hashed square by square in setSquare
+        long before = castlingAndEnPassantKey();
+        boolean promotionChoice = move.getCurrRow() == move.getTargetRow() && move.getCurrCol() == move.getTargetCol();
+        applyMove(move);
+
+        zobristKey ^= before ^ castlingAndEnPassantKey();
+        if (!promotionChoice) { // user picking promotion piece is part of the pawn's move
+            halfmoveHistory.push(halfmoveClock);
+            halfmoveClock = move.getPiece() instanceof Pawn || move.isCaptured() ? 0 : halfmoveClock + 1;
+            if (!whiteToMove) {
+                fullmoveNumber++;
+            }
+            whiteToMove = !whiteToMove;
+            zobristKey ^= Zobrist.WHITE_TO_MOVE;
         }
-
-        undoLastMove(); // undo move
-
-        return inCheck;
+        assert zobristKey == computeZobristKey() : "Zobrist key out of sync after move";
     }
 
-
-    public void movePiece(Move move) {
+    // Also applies the extra rook move of castling and the computer's promotion piece
+    private void applyMove(Move move) {
         Piece p = move.getPiece();
         int currRow = move.getCurrRow();
         int currCol = move.getCurrCol();
@@ -167,6 +280,17 @@ public class Board {
         ArrayList<Piece> playerPieces = p.isWhite() ? whitePieces : blackPieces;
         ArrayList<Piece> opponentPieces = p.isWhite() ? blackPieces : whitePieces;
 
+        // En passant, the captured pawn is beside the target square instead of on it
+        if (p instanceof Pawn && currCol != targetCol && board[targetRow][targetCol] == null) {
+            Piece capturedPawn = board[currRow][targetCol];
+            move.setCaptured(true);
+            move.setEnPassant(true);
+            opponentPieces.remove(capturedPawn);
+            allPieces.remove(capturedPawn);
+            capturedPieces.add(capturedPawn);
+            setSquare(currRow, targetCol, null);
+        }
+
         // Handle piece removal by updating lists
         Piece capturedPiece = board[targetRow][targetCol];
         if(capturedPiece != null) {
@@ -185,8 +309,8 @@ public class Board {
         // Update piece coordinates
         p.setRow(targetRow);
         p.setCol(targetCol);
-        board[currRow][currCol] = null;
-        board[targetRow][targetCol] = p;
+        setSquare(currRow, currCol, null);
+        setSquare(targetRow, targetCol, p);
         lastMoves.add(move);
 
 
@@ -208,7 +332,7 @@ public class Board {
             int rookCurrCol = kingside ? 7 : 0;
             int rookTargetCol = kingside ? targetCol-1 : targetCol+1;
             Piece rook = findPieceByLocation(currRow, rookCurrCol);
-            movePiece(new Move(rook, currRow, rookTargetCol));
+            applyMove(new Move(rook, currRow, rookTargetCol));
         }
 
         // 2. Handle extra promotion move for computer
@@ -216,7 +340,7 @@ public class Board {
         if (!p.isWhite() && isPromotePawn(move)) {
             // computer picks Queen everytime
             Piece newPiece = new Queen(false, targetRow, targetCol);
-            movePiece(new Move(newPiece, targetRow, targetCol));
+            applyMove(new Move(newPiece, targetRow, targetCol));
         }
     }
 
@@ -240,6 +364,21 @@ public class Board {
     public void undoLastMove() {
         if(lastMoves.isEmpty()) return;
 
+        // A promotion or castling sub move is always undone together with its main move
+        long before = castlingAndEnPassantKey();
+        undoMove();
+
+        zobristKey ^= before ^ castlingAndEnPassantKey();
+        whiteToMove = !whiteToMove;
+        zobristKey ^= Zobrist.WHITE_TO_MOVE;
+        if (!whiteToMove) {
+            fullmoveNumber--;
+        }
+        halfmoveClock = halfmoveHistory.isEmpty() ? 0 : halfmoveHistory.pop();
+        assert zobristKey == computeZobristKey() : "Zobrist key out of sync after undo";
+    }
+
+    private void undoMove() {
         Move lastMove = lastMoves.pop();
         Piece movedPiece = lastMove.getPiece();
         int prevRow = lastMove.getCurrRow();
@@ -268,8 +407,13 @@ public class Board {
         // restore piece position and board
         movedPiece.setRow(prevRow);
         movedPiece.setCol(prevCol);
-        board[currRow][currCol] = capturedPiece;
-        board[prevRow][prevCol] = movedPiece;
+        if (lastMove.isEnPassant()) {
+            setSquare(currRow, currCol, null);
+            setSquare(prevRow, currCol, capturedPiece);
+        } else {
+            setSquare(currRow, currCol, capturedPiece);
+        }
+        setSquare(prevRow, prevCol, movedPiece);
 
 
         // for firstMove instances
@@ -285,38 +429,145 @@ public class Board {
 
         // undo both moves for special cases
         if(movedPiece instanceof Rook && !lastMoves.isEmpty() && isCastling(lastMoves.peek())) { // castling
-            undoLastMove();
+            undoMove();
         } else if(prevRow == currRow && prevCol == currCol) { // if pawn upgrade, remove promotion piece and undo move
             allPieces.remove(movedPiece);
             playerPieces.remove(movedPiece);
-            undoLastMove();
+            undoMove();
         }
     }
 
-    public boolean inCheck(boolean isWhite) {
-        King currKing = isWhite ? whiteKing : blackKing;
-        int[] kingsLocation = new int[]{currKing.getRow(), currKing.getCol()};
-        ArrayList<Piece> opponentPieces = new ArrayList<>(isWhite ? blackPieces : whitePieces);
-        for(Piece opp : opponentPieces) {
-            ArrayList<int[]> potentialMoves = new ArrayList<>(opp.availableMoves(this));
-            for (int[] move : potentialMoves) {
-                if (Arrays.equals(move, kingsLocation)) {
-                    return true;
+    // Castling is still possible if neither king nor rook have moved yet
+    public int getCastlingRights() {
+        int rights = 0;
+        if (isUnmoved(7, 4, true, King.class)) {
+            if (isUnmoved(7, 7, true, Rook.class)) rights |= Position.WHITE_KINGSIDE;
+            if (isUnmoved(7, 0, true, Rook.class)) rights |= Position.WHITE_QUEENSIDE;
+        }
+        if (isUnmoved(0, 4, false, King.class)) {
+            if (isUnmoved(0, 7, false, Rook.class)) rights |= Position.BLACK_KINGSIDE;
+            if (isUnmoved(0, 0, false, Rook.class)) rights |= Position.BLACK_QUEENSIDE;
+        }
+        return rights;
+    }
+
+    private boolean isUnmoved(int row, int col, boolean color, Class<? extends Piece> type) {
+        Piece p = board[row][col];
+        if (p == null || p.isWhite() != color) {
+            return false;
+        }
+        if (p instanceof King king && type == King.class) {
+            return king.getLastMoves().isEmpty();
+        } else if (p instanceof Rook rook && type == Rook.class) {
+            return rook.getLastMoves().isEmpty();
+        }
+        return false;
+    }
+
+    // Square skipped by a pawn that just moved two squares, if an opponent pawn could capture on it
+    public int getEnPassantSquare() {
+        if (lastMoves.isEmpty()) {
+            return startEnPassantSquare;
+        }
+        Move last = lastMoves.peek();
+        if (!(last.getPiece() instanceof Pawn) || Math.abs(last.getTargetRow() - last.getCurrRow()) != 2) {
+            return -1;
+        }
+        boolean color = last.getPiece().isWhite();
+        int skipped = Position.square((last.getCurrRow() + last.getTargetRow()) / 2, last.getTargetCol());
+        long capturers = Attacks.pawnAttacks(color ? Position.WHITE : Position.BLACK, skipped)
+                & pieces[(color ? Position.BLACK : Position.WHITE) * 6 + Position.PAWN];
+        return capturers != 0 ? skipped : -1;
+    }
+
+    private long castlingAndEnPassantKey() {
+        return Zobrist.castling(getCastlingRights()) ^ Zobrist.enPassant(getEnPassantSquare());
+    }
+
+    // Recomputes the hash from scratch, used to verify the incremental updates when assertions are enabled
+    public long computeZobristKey() {
+        long key = castlingAndEnPassantKey();
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                if (board[row][col] != null) {
+                    key ^= Zobrist.piece(Position.pieceOf(board[row][col]), Position.square(row, col));
                 }
             }
         }
+        if (whiteToMove) {
+            key ^= Zobrist.WHITE_TO_MOVE;
+        }
+        return key;
+    }
 
-        return false;
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    public boolean isWhiteToMove() {
+        return whiteToMove;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Independent bitboard copy of the current game state. Unlike the board, it doesn't share
+     * Piece objects or their move history: castling rights, en passant and the move counters
+     * are plain fields, so it can be handed to another thread or copied again cheaply.
+     */
+    public Position snapshot() {
+        return new Position(this);
+    }
+
+    public boolean inCheck(boolean isWhite) {
+        King currKing = isWhite ? whiteKing : blackKing;
+        return isSquareAttacked(currKing.getRow(), currKing.getCol(), !isWhite);
+    }
+
+    // Looks outward from the square for each kind of attacker, instead of generating opponent moves
+    public boolean isSquareAttacked(int row, int col, boolean byWhite) {
+        int square = Position.square(row, col);
+        int offset = (byWhite ? Position.WHITE : Position.BLACK) * 6;
+        long occupied = getOccupancy();
+        long queens = pieces[offset + Position.QUEEN];
+
+        // A pawn attacks this square from where an opposite colored pawn on it would attack
+        long pawnSquares = Attacks.pawnAttacks(byWhite ? Position.BLACK : Position.WHITE, square);
+        return (pawnSquares & pieces[offset + Position.PAWN]) != 0
+                || (Attacks.knightAttacks(square) & pieces[offset + Position.KNIGHT]) != 0
+                || (Attacks.kingAttacks(square) & pieces[offset + Position.KING]) != 0
+                || (Attacks.bishopAttacks(square, occupied) & (pieces[offset + Position.BISHOP] | queens)) != 0
+                || (Attacks.rookAttacks(square, occupied) & (pieces[offset + Position.ROOK] | queens)) != 0;
     }
 
     public void setBoard(Piece[][] board) {
         this.board = board;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                setSquare(row, col, board[row][col]);
+            }
+        }
+        zobristKey = computeZobristKey();
     }
 
     public Piece[][] getBoard() {
         return board;
     }
 
+    public long getOccupancy() {
+        return whiteOccupancy | blackOccupancy;
+    }
+
+    public long getOccupancy(boolean color) {
+        return color ? whiteOccupancy : blackOccupancy;
+    }
+
     public ArrayList<Piece> getAllPieces() {
         return allPieces;
     }
@@ -351,7 +602,8 @@ public class Board {
 
     /** for testing purposes **/
     public void placePiece(Piece p, int row, int col) {
-        board[row][col] = p;
+        setSquare(row, col, p);
+        zobristKey = computeZobristKey();
     }
 
     public Piece getKing(boolean color) {
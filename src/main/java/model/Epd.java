@@ -0,0 +1,114 @@
+package model;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One line of an Extended Position Description file, the format test suites are published in
+ * (https://www.chessprogramming.org/Extended_Position_Description), e.g.
+ * 1k1r4/pp1b1R2/3q2pp/4p3/2B5/4Q3/PPP2B2/2K5 b - - bm Qd1+; id "BK.01";
+ *
+ * The first four fields are the same as a FEN. They're followed by operations, an opcode and
+ * its operands ended by a semicolon. The move counters, which EPD leaves out, come from the
+ * hmvc and fmvn operations when present. A full FEN line is accepted too, its counters are the
+ * two numbers after the en passant field.
+ */
+public final class Epd {
+
+    private final String fen;
+    private final Map<String, String> operations;
+
+    // fen - full FEN or its first four fields, operations - operands by opcode, in order
+    public Epd(String fen, Map<String, String> operations) {
+        this.fen = fen;
+        this.operations = Collections.unmodifiableMap(new LinkedHashMap<>(operations));
+    }
+
+    public static Epd parse(String line) {
+        String[] fields = line.trim().split("\\s+", 5);
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("Invalid EPD: " + line);
+        }
+
+        // A FEN's move counters, no opcode is a number
+        String halfmoveClock = null;
+        String fullmoveNumber = null;
+        String rest = fields.length > 4 ? fields[4] : "";
+        String[] counters = rest.split("\\s+", 3);
+        if (counters.length > 1 && isNumber(counters[0]) && isNumber(counters[1])) {
+            halfmoveClock = counters[0];
+            fullmoveNumber = counters[1];
+            rest = counters.length > 2 ? counters[2] : "";
+        }
+
+        // Semicolons inside quoted operands (e.g. comments) don't end the operation
+        Map<String, String> operations = new LinkedHashMap<>();
+        int start = 0;
+        boolean quoted = false;
+        for (int i = 0; i <= rest.length(); i++) {
+            if (i < rest.length() && rest.charAt(i) == '"') {
+                quoted = !quoted;
+            } else if (i == rest.length() || (rest.charAt(i) == ';' && !quoted)) {
+                String operation = rest.substring(start, i).trim();
+                if (!operation.isEmpty()) {
+                    String[] parts = operation.split("\\s+", 2);
+                    operations.put(parts[0], parts.length > 1 ? parts[1] : "");
+                }
+                start = i + 1;
+            }
+        }
+
+        if (halfmoveClock == null) {
+            halfmoveClock = operations.getOrDefault("hmvc", "0");
+            fullmoveNumber = operations.getOrDefault("fmvn", "1");
+        }
+        return new Epd(String.join(" ", fields[0], fields[1], fields[2], fields[3], halfmoveClock, fullmoveNumber),
+                operations);
+    }
+
+    private static boolean isNumber(String field) {
+        return !field.isEmpty() && field.chars().allMatch(Character::isDigit);
+    }
+
+    // Position as a full FEN, with the move counters
+    public String getFen() {
+        return fen;
+    }
+
+    public Map<String, String> getOperations() {
+        return operations;
+    }
+
+    // Operands of an operation with quotes removed (e.g. the id), or null if it's missing
+    public String getOperation(String opcode) {
+        String operands = operations.get(opcode);
+        if (operands != null && operands.length() >= 2 && operands.startsWith("\"") && operands.endsWith("\"")) {
+            return operands.substring(1, operands.length() - 1);
+        }
+        return operands;
+    }
+
+    public Board toBoard() {
+        return new Board(fen);
+    }
+
+    public Position toPosition() {
+        return new Position(fen);
+    }
+
+    // The first four FEN fields followed by the operations
+    @Override
+    public String toString() {
+        String[] fields = fen.trim().split("\\s+");
+        StringBuilder epd = new StringBuilder(String.join(" ", fields[0], fields[1], fields[2], fields[3]));
+        for (Map.Entry<String, String> operation : operations.entrySet()) {
+            epd.append(' ').append(operation.getKey());
+            if (!operation.getValue().isEmpty()) {
+                epd.append(' ').append(operation.getValue());
+            }
+            epd.append(';');
+        }
+        return epd.toString();
+    }
+}
@@ -11,6 +11,7 @@ public class Move {
     int currRow, currCol;
     int targetRow, targetCol;
     boolean isCaptured;
+    boolean isEnPassant;
 
     public Move(Piece piece, int targetRow, int targetCol) {
         this.piece = piece;
@@ -46,4 +47,13 @@ public class Move {
     public boolean isCaptured() {
         return isCaptured;
     }
+
+    // Pawn captured en passant, it stood beside the target square (on the current row)
+    public void setEnPassant(boolean enPassant) {
+        this.isEnPassant = enPassant;
+    }
+
+    public boolean isEnPassant() {
+        return isEnPassant;
+    }
 }
@@ -0,0 +1,83 @@
+package model;
+
+/**
+ * Moves used by Position are stored as plain ints rather than Move objects,
+ * so search and move generation never allocate per move.
+ *
+ * bits 0-5   starting square
+ * bits 6-11  target square
+ * bits 12-14 promotion piece type (0 when the move is not a promotion)
+ * bit  15    capture
+ * bit  16    castling (king move, the rook follows)
+ * bit  17    en passant capture
+ *
+ * The low 16 bits are enough to identify a move in a position, the flags above them
+ * let make/undo and move ordering skip looking at the board.
+ * Squares use the same layout as Board: square = row * 8 + col.
+ */
+public final class PackedMove {
+
+    public static final int NONE = 0;
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int CASTLING = 1 << 16;
+    public static final int EN_PASSANT = 1 << 17;
+
+    private PackedMove() {
+    }
+
+    public static int of(int from, int to) {
+        return from | (to << 6);
+    }
+
+    public static int of(int from, int to, int promotion, int flags) {
+        return from | (to << 6) | (promotion << 12) | flags;
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    public static boolean isPromotion(int move) {
+        return promotion(move) != 0;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        return (move & CASTLING) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & EN_PASSANT) != 0;
+    }
+
+    // Captures and promotions change material, everything else is a quiet move
+    public static boolean isQuiet(int move) {
+        return (move & (CAPTURE | (7 << 12))) == 0;
+    }
+
+    // Coordinate notation (e.g. "e2e4", "a7a8q") as used by the perft references and UCI
+    public static String toString(int move) {
+        String s = squareName(from(move)) + squareName(to(move));
+        int promotion = promotion(move);
+        if (promotion != 0) {
+            s += "pnbrqk".charAt(promotion);
+        }
+        return s;
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + Position.col(square)) + (char) ('8' - Position.row(square));
+    }
+}
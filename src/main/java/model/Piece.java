@@ -1,10 +1,5 @@
 package model;
 
-
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.text.MessageFormat;
 import java.util.ArrayList;
 
 /**
@@ -14,7 +9,6 @@ public abstract class Piece {
     String type;
     boolean isWhite;
     public int row, col;
-    public BufferedImage image;
 
     /**
      * Constructor
@@ -28,22 +22,6 @@ public abstract class Piece {
         this.isWhite = isWhiteIn;
         this.col = col;
         this.row = row;
-        char colorChar = isWhite ? 'w' : 'b';
-        String imagePath = MessageFormat.format("/{0}-{1}", colorChar, typeIn);
-        this.image = getImage(imagePath);
-    }
-
-    public BufferedImage getImage(String imagePath) {
-
-        BufferedImage image = null;
-
-        try {
-            image = ImageIO.read(getClass().getResourceAsStream(imagePath + ".png"));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        return image;
     }
 
     public abstract boolean canMove(int targetCol, int targetRow);
@@ -89,4 +67,14 @@ public abstract class Piece {
     public boolean isWithinBounds(int row, int col) {
         return row >= 0 && row <8 && col >= 0 && col < 8;
     }
+
+    // Converts a bitboard of target squares into the (row,col) list used by the controllers
+    protected ArrayList<int[]> toMoveList(long targets) {
+        ArrayList<int[]> moves = new ArrayList<>(Long.bitCount(targets));
+        for (; targets != 0; targets &= targets - 1) {
+            int square = Long.numberOfTrailingZeros(targets);
+            moves.add(new int[]{Position.row(square), Position.col(square)});
+        }
+        return moves;
+    }
 }
@@ -0,0 +1,129 @@
+package model;
+
+/**
+ * Static evaluation terms that only depend on which piece stands on which square, so Position can
+ * keep their sums up to date on every move instead of the evaluation adding them up at each leaf.
+ *
+ * Each piece has a material value and a bonus for its square, once for the middlegame and once for
+ * the endgame (e.g. the king hides in the corner early on but should walk to the centre late).
+ * The game phase runs from MAX_PHASE with all pieces on the board down to 0 with only kings and
+ * pawns left, and the evaluation blends the two bonuses by it.
+ * Values are in the evaluation's units, a pawn is 10.
+ */
+public final class PieceSquareTables {
+
+    // Indexed by Position piece type
+    public static final int[] VALUES = {10, 30, 30, 50, 90, 2000};
+    public static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+    public static final int MAX_PHASE = 24;
+
+    // Tables are written from white's side, row 0 (rank 8) first, the same layout as Position squares
+    private static final int[] PAWN = {
+             0,  0,  0,  0,  0,  0,  0,  0,
+             5,  5,  5,  5,  5,  5,  5,  5,
+             1,  1,  2,  3,  3,  2,  1,  1,
+             0,  0,  1,  2,  2,  1,  0,  0,
+             0,  0,  0,  2,  2,  0,  0,  0,
+             0,  0, -1,  0,  0, -1,  0,  0,
+             0,  1,  1, -2, -2,  1,  1,  0,
+             0,  0,  0,  0,  0,  0,  0,  0
+    };
+    private static final int[] PAWN_ENDGAME = {
+             0,  0,  0,  0,  0,  0,  0,  0,
+             8,  8,  8,  8,  8,  8,  8,  8,
+             5,  5,  5,  5,  5,  5,  5,  5,
+             3,  3,  3,  3,  3,  3,  3,  3,
+             2,  2,  2,  2,  2,  2,  2,  2,
+             1,  1,  1,  1,  1,  1,  1,  1,
+             0,  0,  0,  0,  0,  0,  0,  0,
+             0,  0,  0,  0,  0,  0,  0,  0
+    };
+    private static final int[] KNIGHT = {
+            -5, -4, -3, -3, -3, -3, -4, -5,
+            -4, -2,  0,  0,  0,  0, -2, -4,
+            -3,  0,  1,  2,  2,  1,  0, -3,
+            -3,  1,  2,  2,  2,  2,  1, -3,
+            -3,  0,  2,  2,  2,  2,  0, -3,
+            -3,  1,  1,  2,  2,  1,  1, -3,
+            -4, -2,  0,  1,  1,  0, -2, -4,
+            -5, -4, -3, -3, -3, -3, -4, -5
+    };
+    private static final int[] BISHOP = {
+            -2, -1, -1, -1, -1, -1, -1, -2,
+            -1,  0,  0,  0,  0,  0,  0, -1,
+            -1,  0,  1,  1,  1,  1,  0, -1,
+            -1,  1,  1,  1,  1,  1,  1, -1,
+            -1,  0,  1,  1,  1,  1,  0, -1,
+            -1,  1,  1,  1,  1,  1,  1, -1,
+            -1,  1,  0,  0,  0,  0,  1, -1,
+            -2, -1, -1, -1, -1, -1, -1, -2
+    };
+    private static final int[] ROOK = {
+             0,  0,  0,  0,  0,  0,  0,  0,
+             1,  1,  1,  1,  1,  1,  1,  1,
+            -1,  0,  0,  0,  0,  0,  0, -1,
+            -1,  0,  0,  0,  0,  0,  0, -1,
+            -1,  0,  0,  0,  0,  0,  0, -1,
+            -1,  0,  0,  0,  0,  0,  0, -1,
+            -1,  0,  0,  0,  0,  0,  0, -1,
+             0,  0,  0,  1,  1,  0,  0,  0
+    };
+    private static final int[] QUEEN = {
+            -2, -1, -1, -1, -1, -1, -1, -2,
+            -1,  0,  0,  0,  0,  0,  0, -1,
+            -1,  0,  1,  1,  1,  1,  0, -1,
+            -1,  0,  1,  1,  1,  1,  0, -1,
+            -1,  0,  1,  1,  1,  1,  0, -1,
+            -1,  0,  1,  1,  1,  1,  0, -1,
+            -1,  0,  0,  0,  0,  0,  0, -1,
+            -2, -1, -1, -1, -1, -1, -1, -2
+    };
+    private static final int[] KING = {
+            -3, -4, -4, -5, -5, -4, -4, -3,
+            -3, -4, -4, -5, -5, -4, -4, -3,
+            -3, -4, -4, -5, -5, -4, -4, -3,
+            -3, -4, -4, -5, -5, -4, -4, -3,
+            -2, -3, -3, -4, -4, -3, -3, -2,
+            -1, -2, -2, -2, -2, -2, -2, -1,
+             2,  2,  0,  0,  0,  0,  2,  2,
+             2,  3,  1,  0,  0,  1,  3,  2
+    };
+    private static final int[] KING_ENDGAME = {
+            -5, -4, -3, -2, -2, -3, -4, -5,
+            -3, -2, -1,  0,  0, -1, -2, -3,
+            -3, -1,  2,  3,  3,  2, -1, -3,
+            -3, -1,  3,  4,  4,  3, -1, -3,
+            -3, -1,  3,  4,  4,  3, -1, -3,
+            -3, -1,  2,  3,  3,  2, -1, -3,
+            -3, -3,  0,  0,  0,  0, -3, -3,
+            -5, -3, -3, -3, -3, -3, -3, -5
+    };
+
+    // Square bonuses by piece (color * 6 + type) and square, black's tables mirrored top to bottom
+    private static final int[][] MIDGAME = new int[12][64];
+    private static final int[][] ENDGAME = new int[12][64];
+
+    static {
+        int[][] midgame = {PAWN, KNIGHT, BISHOP, ROOK, QUEEN, KING};
+        int[][] endgame = {PAWN_ENDGAME, KNIGHT, BISHOP, ROOK, QUEEN, KING_ENDGAME};
+        for (int type = 0; type < 6; type++) {
+            for (int sq = 0; sq < 64; sq++) {
+                MIDGAME[Position.WHITE * 6 + type][sq] = midgame[type][sq];
+                ENDGAME[Position.WHITE * 6 + type][sq] = endgame[type][sq];
+                MIDGAME[Position.BLACK * 6 + type][sq] = midgame[type][sq ^ 56];
+                ENDGAME[Position.BLACK * 6 + type][sq] = endgame[type][sq ^ 56];
+            }
+        }
+    }
+
+    private PieceSquareTables() {
+    }
+
+    public static int midgame(int piece, int square) {
+        return MIDGAME[piece][square];
+    }
+
+    public static int endgame(int piece, int square) {
+        return ENDGAME[piece][square];
+    }
+}
@@ -0,0 +1,848 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard representation of the game, used by the computer player's search.
+ * Every piece type of each color is a 64-bit set where bit n is square n
+ * (square = row * 8 + col, same coordinates as Board), alongside the side to move,
+ * castling rights and en passant square. Mirrors the make/undo and legal move
+ * queries of Board, but without any Piece objects to create or traverse.
+ */
+public class Position {
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // Piece types, a piece is stored as color * 6 + type
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int EMPTY = -1;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final String PIECE_CHARS = "PNBRQKpnbrqk";
+    // More than the most legal moves possible in any position (218)
+    public static final int MAX_MOVES = 256;
+    // First size of the undo history, enough for a typical search without growing again
+    private static final int MAX_PLY_HINT = 64;
+
+    // Castling rights kept after a piece moves from or to each square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[square(7, 4)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[square(7, 7)] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[square(7, 0)] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[square(0, 4)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[square(0, 7)] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[square(0, 0)] &= ~BLACK_QUEENSIDE;
+    }
+
+    final long[] pieces = new long[12];
+    final long[] colors = new long[2];
+    long occupied;
+    final int[] mailbox = new int[64];
+
+    int sideToMove;
+    int castlingRights;
+    int enPassantSquare = -1;
+    int halfmoveClock;
+    int fullmoveNumber = 1;
+
+    // Pieces giving check to the side to move, updated on every move so check detection is a lookup
+    long checkers;
+
+    // Hash of the position, updated with XORs on every move (see Zobrist)
+    long zobristKey;
+    // Hash of the pawns alone, for caching pawn structure evaluation
+    long pawnKey;
+
+    // Evaluation terms by color, updated as pieces are put and removed (see PieceSquareTables)
+    final int[] material = new int[2];
+    final int[] midgame = new int[2];
+    final int[] endgame = new int[2];
+    int phase;
+
+    // Undo history, one entry per move played. Starts empty and grows on the first moves,
+    // so copies handed to other threads don't pay for it up front
+    int ply;
+    int[] moveHistory = NO_MOVES;
+    int[] stateHistory = NO_MOVES;
+    long[] checkersHistory = NO_CHECKERS;
+    private static final int[] NO_MOVES = new int[0];
+    private static final long[] NO_CHECKERS = new long[0];
+
+
+    public Position() {
+        this(START_FEN);
+    }
+
+    public Position(String fen) {
+        Arrays.fill(mailbox, EMPTY);
+        loadFen(fen);
+    }
+
+    /*
+     * Snapshot of the current position, e.g. for another thread. Only the board and the plain state
+     * fields are copied, moves played before the copy can't be undone on it. Takes well under a
+     * microsecond, so search threads and batch jobs can each work on their own copy.
+     */
+    public Position(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.colors, 0, colors, 0, colors.length);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, mailbox.length);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        checkers = other.checkers;
+        zobristKey = other.zobristKey;
+        pawnKey = other.pawnKey;
+        System.arraycopy(other.material, 0, material, 0, 2);
+        System.arraycopy(other.midgame, 0, midgame, 0, 2);
+        System.arraycopy(other.endgame, 0, endgame, 0, 2);
+        phase = other.phase;
+    }
+
+    // Snapshot of the game board including the move counters, see Board.snapshot()
+    public Position(Board board) {
+        this(board, board.isWhiteToMove());
+        halfmoveClock = board.getHalfmoveClock();
+        fullmoveNumber = board.getFullmoveNumber();
+    }
+
+    // Converts the object board into bitboards, used at the boundary between GUI and search.
+    // The board's en passant square only applies when it's that side's turn
+    public Position(Board board, boolean whiteToMove) {
+        Arrays.fill(mailbox, EMPTY);
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                Piece p = board.findPieceByLocation(row, col);
+                if (p != null) {
+                    putPiece(pieceOf(p), square(row, col));
+                }
+            }
+        }
+
+        castlingRights = board.getCastlingRights();
+        sideToMove = whiteToMove ? WHITE : BLACK;
+        if (whiteToMove == board.isWhiteToMove()) {
+            enPassantSquare = board.getEnPassantSquare();
+        }
+        checkers = findCheckers();
+        zobristKey = computeZobristKey();
+    }
+
+    // Only keep castling rights whose king and rook are on their starting squares
+    private int startingSquaresRights() {
+        int rights = 0;
+        if (mailbox[square(7, 4)] == WHITE * 6 + KING) {
+            if (mailbox[square(7, 7)] == WHITE * 6 + ROOK) rights |= WHITE_KINGSIDE;
+            if (mailbox[square(7, 0)] == WHITE * 6 + ROOK) rights |= WHITE_QUEENSIDE;
+        }
+        if (mailbox[square(0, 4)] == BLACK * 6 + KING) {
+            if (mailbox[square(0, 7)] == BLACK * 6 + ROOK) rights |= BLACK_KINGSIDE;
+            if (mailbox[square(0, 0)] == BLACK * 6 + ROOK) rights |= BLACK_QUEENSIDE;
+        }
+        return rights;
+    }
+
+    public static int pieceOf(Piece p) {
+        int color = p.isWhite() ? WHITE : BLACK;
+        int type = switch (p.getType()) {
+            case "pawn" -> PAWN;
+            case "knight" -> KNIGHT;
+            case "bishop" -> BISHOP;
+            case "rook" -> ROOK;
+            case "queen" -> QUEEN;
+            case "king" -> KING;
+            default -> throw new IllegalStateException("Unexpected value: " + p.getType());
+        };
+        return color * 6 + type;
+    }
+
+    private void loadFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        // 1. Piece placement, starting from row 0 (rank 8)
+        int row = 0;
+        int col = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/') {
+                row++;
+                col = 0;
+            } else if (Character.isDigit(c)) {
+                col += c - '0';
+            } else {
+                int piece = PIECE_CHARS.indexOf(c);
+                if (piece < 0 || row > 7 || col > 7) {
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                putPiece(piece, square(row, col));
+                col++;
+            }
+        }
+
+        // 2. Side to move
+        sideToMove = fields[1].equals("b") ? BLACK : WHITE;
+
+        // 3. Castling rights
+        for (char c : fields[2].toCharArray()) {
+            switch (c) {
+                case 'K' -> castlingRights |= WHITE_KINGSIDE;
+                case 'Q' -> castlingRights |= WHITE_QUEENSIDE;
+                case 'k' -> castlingRights |= BLACK_KINGSIDE;
+                case 'q' -> castlingRights |= BLACK_QUEENSIDE;
+                default -> { }
+            }
+        }
+        castlingRights &= startingSquaresRights();
+
+        // 4. En passant target square, only kept if a pawn can capture on it (like movePiece does)
+        // so the position hashes the same as when reached by playing the moves
+        if (!fields[3].equals("-")) {
+            if (fields[3].length() != 2) {
+                throw new IllegalArgumentException("Invalid FEN: " + fen);
+            }
+            int epCol = fields[3].charAt(0) - 'a';
+            int epRow = '8' - fields[3].charAt(1);
+            if (epCol < 0 || epCol > 7 || (epRow != 2 && epRow != 5)) {
+                throw new IllegalArgumentException("Invalid FEN: " + fen);
+            }
+            int skipped = square(epRow, epCol);
+            if ((Attacks.pawnAttacks(1 - sideToMove, skipped) & pieces[sideToMove * 6 + PAWN]) != 0) {
+                enPassantSquare = skipped;
+            }
+        }
+
+        // 5-6. Optional move counters
+        halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+        fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        checkers = findCheckers();
+        zobristKey = computeZobristKey();
+    }
+
+
+    // Writes the position as FEN, the en passant square only when a capture on it is possible
+    public String toFen() {
+        StringBuilder fen = new StringBuilder(90);
+        for (int row = 0; row < 8; row++) {
+            int empty = 0;
+            for (int col = 0; col < 8; col++) {
+                int piece = mailbox[square(row, col)];
+                if (piece == EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(PIECE_CHARS.charAt(piece));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row < 7) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(sideToMove == WHITE ? " w " : " b ");
+        if (castlingRights == 0) {
+            fen.append('-');
+        } else {
+            if ((castlingRights & WHITE_KINGSIDE) != 0) fen.append('K');
+            if ((castlingRights & WHITE_QUEENSIDE) != 0) fen.append('Q');
+            if ((castlingRights & BLACK_KINGSIDE) != 0) fen.append('k');
+            if ((castlingRights & BLACK_QUEENSIDE) != 0) fen.append('q');
+        }
+        fen.append(' ').append(enPassantSquare == -1 ? "-" : PackedMove.squareName(enPassantSquare));
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+
+    /* Board updates **/
+
+    private void putPiece(int piece, int square) {
+        long bit = 1L << square;
+        int color = piece / 6;
+        int type = piece % 6;
+        pieces[piece] |= bit;
+        colors[color] |= bit;
+        occupied |= bit;
+        mailbox[square] = piece;
+        zobristKey ^= Zobrist.piece(piece, square);
+        if (type == PAWN) {
+            pawnKey ^= Zobrist.piece(piece, square);
+        }
+        material[color] += PieceSquareTables.VALUES[type];
+        midgame[color] += PieceSquareTables.midgame(piece, square);
+        endgame[color] += PieceSquareTables.endgame(piece, square);
+        phase += PieceSquareTables.PHASE[type];
+    }
+
+    private void removePiece(int piece, int square) {
+        long bit = ~(1L << square);
+        int color = piece / 6;
+        int type = piece % 6;
+        pieces[piece] &= bit;
+        colors[color] &= bit;
+        occupied &= bit;
+        mailbox[square] = EMPTY;
+        zobristKey ^= Zobrist.piece(piece, square);
+        if (type == PAWN) {
+            pawnKey ^= Zobrist.piece(piece, square);
+        }
+        material[color] -= PieceSquareTables.VALUES[type];
+        midgame[color] -= PieceSquareTables.midgame(piece, square);
+        endgame[color] -= PieceSquareTables.endgame(piece, square);
+        phase -= PieceSquareTables.PHASE[type];
+    }
+
+    public void movePiece(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int promotion = PackedMove.promotion(move);
+        int piece = mailbox[from];
+        int us = piece / 6;
+        int type = piece % 6;
+
+        // Find captured piece, which is behind the target square for en passant
+        int capturedSquare = to;
+        if (PackedMove.isEnPassant(move)) {
+            capturedSquare = us == WHITE ? to + 8 : to - 8;
+        }
+        int captured = mailbox[capturedSquare];
+
+        // Save everything that can't be recomputed on undo
+        if (ply == moveHistory.length) {
+            int capacity = Math.max(MAX_PLY_HINT, ply * 2);
+            moveHistory = Arrays.copyOf(moveHistory, capacity);
+            stateHistory = Arrays.copyOf(stateHistory, capacity);
+            checkersHistory = Arrays.copyOf(checkersHistory, capacity);
+        }
+        moveHistory[ply] = move;
+        checkersHistory[ply] = checkers;
+        stateHistory[ply] = castlingRights
+                | (enPassantSquare + 1) << 4
+                | (captured + 1) << 11
+                | halfmoveClock << 15;
+        ply++;
+
+        zobristKey ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        if (captured != EMPTY) {
+            removePiece(captured, capturedSquare);
+        }
+        removePiece(piece, from);
+        putPiece(promotion != 0 ? us * 6 + promotion : piece, to);
+
+        // Castling, move rook to the other side of the king
+        if (PackedMove.isCastling(move)) {
+            int rookFrom = to > from ? to + 1 : to - 2;
+            int rookTo = to > from ? to - 1 : to + 1;
+            removePiece(us * 6 + ROOK, rookFrom);
+            putPiece(us * 6 + ROOK, rookTo);
+        }
+
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+
+        // En passant square is only kept if an opponent pawn could actually capture
+        enPassantSquare = -1;
+        if (type == PAWN && Math.abs(to - from) == 16) {
+            int skipped = (from + to) / 2;
+            if ((Attacks.pawnAttacks(us, skipped) & pieces[(1 - us) * 6 + PAWN]) != 0) {
+                enPassantSquare = skipped;
+            }
+        }
+
+        halfmoveClock = (type == PAWN || captured != EMPTY) ? 0 : halfmoveClock + 1;
+        if (us == BLACK) {
+            fullmoveNumber++;
+        }
+        sideToMove = 1 - us;
+        checkers = findCheckers();
+        zobristKey ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare) ^ Zobrist.WHITE_TO_MOVE;
+        assert zobristKey == computeZobristKey() : "Zobrist key out of sync after " + PackedMove.toString(move);
+        assert evaluationInSync() : "Evaluation terms out of sync after " + PackedMove.toString(move);
+    }
+
+    public void undoLastMove() {
+        if (ply == 0) return;
+
+        ply--;
+        int move = moveHistory[ply];
+        int state = stateHistory[ply];
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int us = 1 - sideToMove;
+
+        sideToMove = us;
+        if (us == BLACK) {
+            fullmoveNumber--;
+        }
+        zobristKey ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare) ^ Zobrist.WHITE_TO_MOVE;
+        castlingRights = state & 15;
+        enPassantSquare = ((state >>> 4) & 127) - 1;
+        int captured = ((state >>> 11) & 15) - 1;
+        halfmoveClock = state >>> 15;
+        checkers = checkersHistory[ply];
+        zobristKey ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+
+        // Restore moved piece, which was a pawn if promoted
+        int piece = PackedMove.promotion(move) != 0 ? us * 6 + PAWN : mailbox[to];
+        removePiece(mailbox[to], to);
+        putPiece(piece, from);
+
+        if (PackedMove.isCastling(move)) {
+            int rookFrom = to > from ? to + 1 : to - 2;
+            int rookTo = to > from ? to - 1 : to + 1;
+            removePiece(us * 6 + ROOK, rookTo);
+            putPiece(us * 6 + ROOK, rookFrom);
+        }
+
+        // Bring back captured piece
+        if (captured != EMPTY) {
+            int capturedSquare = to;
+            if (PackedMove.isEnPassant(move)) {
+                capturedSquare = us == WHITE ? to + 8 : to - 8;
+            }
+            putPiece(captured, capturedSquare);
+        }
+        assert zobristKey == computeZobristKey() : "Zobrist key out of sync after undoing " + PackedMove.toString(move);
+        assert evaluationInSync() : "Evaluation terms out of sync after undoing " + PackedMove.toString(move);
+    }
+
+
+    /* Move generation **/
+
+    // Legal moves for the side to move
+    public int[] getAllPossibleMoves() {
+        return getAllPossibleMoves(sideToMove == WHITE);
+    }
+
+    /*
+     * Generates only legal moves. Pins and checks are worked out once for the position:
+     * pinned pieces may only move along the line to their king, and when in check every
+     * other piece must capture the checker or block the check. The king itself can't step
+     * onto an attacked square. Only en passant, which removes two pieces from a row at once,
+     * is still verified by playing the move.
+     */
+    public int[] getAllPossibleMoves(boolean color) {
+        int[] moves = new int[MAX_MOVES];
+        int count = generateLegalMoves(color ? WHITE : BLACK, moves);
+        return Arrays.copyOf(moves, count);
+    }
+
+    // Allocation free versions for search, fills a preallocated buffer and returns the number of moves
+    public int getAllPossibleMoves(int[] moves) {
+        return generateLegalMoves(sideToMove, moves);
+    }
+
+    public int getAllPossibleMoves(boolean color, int[] moves) {
+        return generateLegalMoves(color ? WHITE : BLACK, moves);
+    }
+
+    // Legal captures and promotions only, the moves quiescence search looks at
+    public int getCaptures(int[] moves) {
+        return generateLegalMoves(sideToMove, moves, colors[1 - sideToMove]);
+    }
+
+    private int generateLegalMoves(int us, int[] moves) {
+        return generateLegalMoves(us, moves, ~0L);
+    }
+
+    // Only moves landing on a square of mask are generated (promotions and en passant always are)
+    private int generateLegalMoves(int us, int[] moves, long mask) {
+        int count = 0;
+        int them = 1 - us;
+        long own = colors[us];
+
+        long kingBit = pieces[us * 6 + KING];
+        if (kingBit == 0) {
+            return generateMoves(us, moves, 0, -1, 0L, ~0L, mask); // test positions without a king
+        }
+        int kingSquare = Long.numberOfTrailingZeros(kingBit);
+        long checks = us == sideToMove ? checkers : attackersTo(kingSquare, them, occupied);
+
+        // King moves, looking through the king itself so it can't retreat along a checking ray
+        long kingTargets = Attacks.kingAttacks(kingSquare) & ~own & mask;
+        long withoutKing = occupied ^ kingBit;
+        for (; kingTargets != 0; kingTargets &= kingTargets - 1) {
+            int to = Long.numberOfTrailingZeros(kingTargets);
+            if (attackersTo(to, them, withoutKing) == 0) {
+                moves[count++] = PackedMove.of(kingSquare, to, 0, captureFlag(to, them));
+            }
+        }
+
+        // In double check only the king can move
+        if (Long.bitCount(checks) > 1) {
+            return count;
+        }
+
+        // Squares that resolve a single check, capturing the checker or blocking its ray
+        long evasions = ~0L;
+        if (checks != 0) {
+            int checker = Long.numberOfTrailingZeros(checks);
+            evasions = checks | Attacks.between(kingSquare, checker);
+        }
+
+        return generateMoves(us, moves, count, kingSquare, pinnedPieces(us, kingSquare), evasions, mask);
+    }
+
+    // Own pieces that are the only piece between the king and an enemy slider
+    private long pinnedPieces(int us, int kingSquare) {
+        int them = 1 - us;
+        long enemy = colors[them];
+        long snipers = (Attacks.rookAttacks(kingSquare, enemy) & (pieces[them * 6 + ROOK] | pieces[them * 6 + QUEEN]))
+                | (Attacks.bishopAttacks(kingSquare, enemy) & (pieces[them * 6 + BISHOP] | pieces[them * 6 + QUEEN]));
+        long pinned = 0L;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Attacks.between(kingSquare, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & colors[us];
+            }
+        }
+        return pinned;
+    }
+
+    // Moves of all pieces except the king, restricted by pins and check evasion squares
+    private int generateMoves(int us, int[] moves, int count, int kingSquare, long pinned, long evasions, long mask) {
+        int them = 1 - us;
+        long own = colors[us];
+        long enemy = colors[them];
+        long empty = ~occupied;
+
+        // Pawns, white moves towards row 0 (-8) and black towards row 7 (+8)
+        int forward = us == WHITE ? -8 : 8;
+        int startRow = us == WHITE ? 6 : 1;
+        int promotionRow = us == WHITE ? 0 : 7;
+        int epSquare = us == sideToMove ? enPassantSquare : -1;
+        long pawnMask = mask | (0xFFL << (promotionRow * 8));
+        for (long pawns = pieces[us * 6 + PAWN]; pawns != 0; pawns &= pawns - 1) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            long targets = Attacks.pawnAttacks(us, from) & enemy;
+            int oneStep = from + forward;
+            if ((empty & (1L << oneStep)) != 0) {
+                targets |= 1L << oneStep;
+                int twoStep = oneStep + forward;
+                if (row(from) == startRow && (empty & (1L << twoStep)) != 0) {
+                    targets |= 1L << twoStep;
+                }
+            }
+            targets &= evasions & pawnMask;
+            if ((pinned & (1L << from)) != 0) {
+                targets &= Attacks.line(kingSquare, from);
+            }
+
+            for (; targets != 0; targets &= targets - 1) {
+                int to = Long.numberOfTrailingZeros(targets);
+                int flags = captureFlag(to, them);
+                if (row(to) == promotionRow) {
+                    for (int promotion = QUEEN; promotion >= KNIGHT; promotion--) {
+                        moves[count++] = PackedMove.of(from, to, promotion, flags);
+                    }
+                } else {
+                    moves[count++] = PackedMove.of(from, to, 0, flags);
+                }
+            }
+
+            // En passant is rare enough to simply try it
+            if (epSquare != -1 && (Attacks.pawnAttacks(us, from) & (1L << epSquare)) != 0) {
+                int move = PackedMove.of(from, epSquare, 0, PackedMove.CAPTURE | PackedMove.EN_PASSANT);
+                movePiece(move);
+                if (!inCheck(us == WHITE)) {
+                    moves[count++] = move;
+                }
+                undoLastMove();
+            }
+        }
+
+        // Knights, bishops, rooks and queens
+        for (int type = KNIGHT; type <= QUEEN; type++) {
+            for (long bb = pieces[us * 6 + type]; bb != 0; bb &= bb - 1) {
+                int from = Long.numberOfTrailingZeros(bb);
+                long targets = attacks(type, from, occupied) & ~own & evasions & mask;
+                if ((pinned & (1L << from)) != 0) {
+                    targets &= Attacks.line(kingSquare, from);
+                }
+                for (; targets != 0; targets &= targets - 1) {
+                    int to = Long.numberOfTrailingZeros(targets);
+                    moves[count++] = PackedMove.of(from, to, 0, captureFlag(to, them));
+                }
+            }
+        }
+
+        // Castling - king and rook unmoved, squares between vacant and king never passes through check
+        if (evasions == ~0L && mask == ~0L && kingSquare != -1) {
+            if (us == WHITE) {
+                if ((castlingRights & WHITE_KINGSIDE) != 0 && canCastle(square(7, 4), square(7, 7), them)) {
+                    moves[count++] = PackedMove.of(square(7, 4), square(7, 6), 0, PackedMove.CASTLING);
+                }
+                if ((castlingRights & WHITE_QUEENSIDE) != 0 && canCastle(square(7, 4), square(7, 0), them)) {
+                    moves[count++] = PackedMove.of(square(7, 4), square(7, 2), 0, PackedMove.CASTLING);
+                }
+            } else {
+                if ((castlingRights & BLACK_KINGSIDE) != 0 && canCastle(square(0, 4), square(0, 7), them)) {
+                    moves[count++] = PackedMove.of(square(0, 4), square(0, 6), 0, PackedMove.CASTLING);
+                }
+                if ((castlingRights & BLACK_QUEENSIDE) != 0 && canCastle(square(0, 4), square(0, 0), them)) {
+                    moves[count++] = PackedMove.of(square(0, 4), square(0, 2), 0, PackedMove.CASTLING);
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private int captureFlag(int square, int them) {
+        return (colors[them] & (1L << square)) != 0 ? PackedMove.CAPTURE : 0;
+    }
+
+    private boolean canCastle(int kingSquare, int rookSquare, int them) {
+        int direction = rookSquare > kingSquare ? 1 : -1;
+        for (int sq = kingSquare + direction; sq != rookSquare; sq += direction) {
+            if (mailbox[sq] != EMPTY) {
+                return false;
+            }
+        }
+        // King's start, passing and landing squares must not be attacked
+        for (int sq = kingSquare, i = 0; i < 3; sq += direction, i++) {
+            if (isSquareAttacked(sq, them)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long attacks(int type, int square, long occupied) {
+        return switch (type) {
+            case KNIGHT -> Attacks.knightAttacks(square);
+            case BISHOP -> Attacks.bishopAttacks(square, occupied);
+            case ROOK -> Attacks.rookAttacks(square, occupied);
+            case QUEEN -> Attacks.queenAttacks(square, occupied);
+            case KING -> Attacks.kingAttacks(square);
+            default -> 0L;
+        };
+    }
+
+
+    /* Attack queries **/
+
+    public boolean inCheck(boolean isWhite) {
+        int us = isWhite ? WHITE : BLACK;
+        if (us == sideToMove) {
+            return checkers != 0;
+        }
+        long king = pieces[us * 6 + KING];
+        return king != 0 && isSquareAttacked(Long.numberOfTrailingZeros(king), 1 - us);
+    }
+
+    // Constant time check for the side to move
+    public boolean inCheck() {
+        return checkers != 0;
+    }
+
+    public long getCheckers() {
+        return checkers;
+    }
+
+    private long findCheckers() {
+        long king = pieces[sideToMove * 6 + KING];
+        if (king == 0) {
+            return 0L;
+        }
+        return attackersTo(Long.numberOfTrailingZeros(king), 1 - sideToMove, occupied);
+    }
+
+    // Checks outward from the square whether any piece of the given color could capture on it
+    public boolean isSquareAttacked(int square, int byColor) {
+        int offset = byColor * 6;
+        return (Attacks.pawnAttacks(1 - byColor, square) & pieces[offset + PAWN]) != 0
+                || (Attacks.knightAttacks(square) & pieces[offset + KNIGHT]) != 0
+                || (Attacks.kingAttacks(square) & pieces[offset + KING]) != 0
+                || (Attacks.bishopAttacks(square, occupied) & (pieces[offset + BISHOP] | pieces[offset + QUEEN])) != 0
+                || (Attacks.rookAttacks(square, occupied) & (pieces[offset + ROOK] | pieces[offset + QUEEN])) != 0;
+    }
+
+    // All pieces of the given color attacking the square, sliders see through squares missing from occupied
+    public long attackersTo(int square, int byColor, long occupied) {
+        int offset = byColor * 6;
+        return (Attacks.pawnAttacks(1 - byColor, square) & pieces[offset + PAWN])
+                | (Attacks.knightAttacks(square) & pieces[offset + KNIGHT])
+                | (Attacks.kingAttacks(square) & pieces[offset + KING])
+                | (Attacks.bishopAttacks(square, occupied) & (pieces[offset + BISHOP] | pieces[offset + QUEEN]))
+                | (Attacks.rookAttacks(square, occupied) & (pieces[offset + ROOK] | pieces[offset + QUEEN]));
+    }
+
+    // Union of all squares attacked by one side
+    public long attackedSquares(int color, long occupied) {
+        int offset = color * 6;
+        long attacks = 0L;
+        for (long pawns = pieces[offset + PAWN]; pawns != 0; pawns &= pawns - 1) {
+            attacks |= Attacks.pawnAttacks(color, Long.numberOfTrailingZeros(pawns));
+        }
+        for (int type = KNIGHT; type <= KING; type++) {
+            for (long bb = pieces[offset + type]; bb != 0; bb &= bb - 1) {
+                attacks |= attacks(type, Long.numberOfTrailingZeros(bb), occupied);
+            }
+        }
+        return attacks;
+    }
+
+
+    /* Getters **/
+
+    public long getZobristKey() {
+        return zobristKey;
+    }
+
+    // Recomputes the hash from scratch, used to verify the incremental updates when assertions are enabled
+    public long computeZobristKey() {
+        long key = 0L;
+        for (int sq = 0; sq < 64; sq++) {
+            if (mailbox[sq] != EMPTY) {
+                key ^= Zobrist.piece(mailbox[sq], sq);
+            }
+        }
+        key ^= Zobrist.castling(castlingRights) ^ Zobrist.enPassant(enPassantSquare);
+        if (sideToMove == WHITE) {
+            key ^= Zobrist.WHITE_TO_MOVE;
+        }
+        return key;
+    }
+
+    // Recomputes the incremental evaluation terms from scratch, for the assertions in make/undo
+    private boolean evaluationInSync() {
+        Position fresh = new Position(this);
+        fresh.pawnKey = 0;
+        fresh.phase = 0;
+        for (int color = WHITE; color <= BLACK; color++) {
+            fresh.material[color] = 0;
+            fresh.midgame[color] = 0;
+            fresh.endgame[color] = 0;
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            if (mailbox[sq] != EMPTY) {
+                fresh.putPiece(mailbox[sq], sq);
+            }
+        }
+        return fresh.pawnKey == pawnKey && fresh.phase == phase
+                && Arrays.equals(fresh.material, material)
+                && Arrays.equals(fresh.midgame, midgame)
+                && Arrays.equals(fresh.endgame, endgame);
+    }
+
+    public int findPieceByLocation(int row, int col) {
+        return mailbox[square(row, col)];
+    }
+
+    public int getPiece(int square) {
+        return mailbox[square];
+    }
+
+    public long getPieces(int color, int type) {
+        return pieces[color * 6 + type];
+    }
+
+    public long getColorOccupancy(int color) {
+        return colors[color];
+    }
+
+    public long getOccupancy() {
+        return occupied;
+    }
+
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
+    // Sum of the piece values of one side, kings included
+    public int getMaterial(int color) {
+        return material[color];
+    }
+
+    // Sum of the middlegame square bonuses of one side's pieces
+    public int getMidgameBonus(int color) {
+        return midgame[color];
+    }
+
+    public int getEndgameBonus(int color) {
+        return endgame[color];
+    }
+
+    // MAX_PHASE with all pieces on the board down to 0 with only kings and pawns, can exceed MAX_PHASE after promotions
+    public int getPhase() {
+        return phase;
+    }
+
+    public boolean isWhiteToMove() {
+        return sideToMove == WHITE;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public int getLastMove() {
+        return ply == 0 ? 0 : moveHistory[ply - 1];
+    }
+
+    // Piece taken by the last move, or EMPTY
+    public int getLastCapturedPiece() {
+        return ply == 0 ? EMPTY : ((stateHistory[ply - 1] >>> 11) & 15) - 1;
+    }
+
+    public static int square(int row, int col) {
+        return row * 8 + col;
+    }
+
+    public static int row(int square) {
+        return square >>> 3;
+    }
+
+    public static int col(int square) {
+        return square & 7;
+    }
+
+    public static int colorOf(int piece) {
+        return piece / 6;
+    }
+
+    public static int typeOf(int piece) {
+        return piece % 6;
+    }
+}
@@ -0,0 +1,71 @@
+package model;
+
+/**
+ * Random 64-bit keys used to give every position a (practically) unique hash.
+ * A position's key is the XOR of the keys of each piece on its square, the castling
+ * rights, the en passant column and the side to move, so a move only needs to XOR out
+ * what changed instead of rehashing the whole board.
+ *
+ * Keys are laid out like the Polyglot opening book format: 768 piece-square keys,
+ * 4 castling keys, 8 en passant keys and 1 side to move key (XORed in when white moves).
+ */
+public final class Zobrist {
+
+    private static final long[] RANDOM = new long[781];
+    private static final int CASTLING_OFFSET = 768;
+    private static final int EN_PASSANT_OFFSET = 772;
+    private static final int TURN_OFFSET = 780;
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT = new long[8];
+    public static final long WHITE_TO_MOVE;
+
+    static {
+        // xorshift64* with a fixed seed so keys are the same on every run
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < RANDOM.length; i++) {
+            seed ^= seed >>> 12;
+            seed ^= seed << 25;
+            seed ^= seed >>> 27;
+            RANDOM[i] = seed * 0x2545F4914F6CDD1DL;
+        }
+
+        for (int piece = 0; piece < 12; piece++) {
+            // Polyglot orders pieces black pawn, white pawn, black knight, ... and squares from a1
+            int kind = 2 * Position.typeOf(piece) + (Position.colorOf(piece) == Position.WHITE ? 1 : 0);
+            for (int sq = 0; sq < 64; sq++) {
+                int polyglotSquare = 8 * (7 - Position.row(sq)) + Position.col(sq);
+                PIECE_SQUARE[piece][sq] = RANDOM[64 * kind + polyglotSquare];
+            }
+        }
+        for (int rights = 0; rights < 16; rights++) {
+            for (int i = 0; i < 4; i++) {
+                if ((rights & (1 << i)) != 0) {
+                    CASTLING[rights] ^= RANDOM[CASTLING_OFFSET + i];
+                }
+            }
+        }
+        for (int col = 0; col < 8; col++) {
+            EN_PASSANT[col] = RANDOM[EN_PASSANT_OFFSET + col];
+        }
+        WHITE_TO_MOVE = RANDOM[TURN_OFFSET];
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int piece, int square) {
+        return PIECE_SQUARE[piece][square];
+    }
+
+    // Combined key of all castling rights set in the Position castling bitmask
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    // Key for an en passant square, or 0 if there is none
+    public static long enPassant(int square) {
+        return square == -1 ? 0L : EN_PASSANT[Position.col(square)];
+    }
+}
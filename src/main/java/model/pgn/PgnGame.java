@@ -0,0 +1,110 @@
+package model.pgn;
+
+import model.Position;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One game of a PGN file: its tags (Event, White, Result...) and its moves in SAN.
+ * Moves are kept as text and only checked against the board when the game is replayed,
+ * so reading through an archive costs no move generation.
+ */
+public class PgnGame {
+
+    // The Seven Tag Roster, always written first and in this order
+    static final String[] ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAW = "1/2-1/2";
+    public static final String UNFINISHED = "*";
+
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private final List<String> moves = new ArrayList<>();
+
+    public PgnGame() {
+        for (String name : ROSTER) {
+            tags.put(name, "?");
+        }
+        tags.put("Result", UNFINISHED);
+    }
+
+    // Game starting from a set up position instead of the usual one
+    public PgnGame(String fen) {
+        this();
+        if (!fen.equals(Position.START_FEN)) {
+            tags.put("SetUp", "1");
+            tags.put("FEN", fen);
+        }
+    }
+
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    // Value of a tag, or null if the game doesn't have it
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    public String getResult() {
+        return tags.get("Result");
+    }
+
+    public void setResult(String result) {
+        tags.put("Result", result);
+    }
+
+    public String getStartFen() {
+        return tags.getOrDefault("FEN", Position.START_FEN);
+    }
+
+    public List<String> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+
+    // Appends a move already written in SAN
+    public void addMove(String san) {
+        moves.add(san);
+    }
+
+    /**
+     * Appends a move as it's played: position is the game's current position, before the move.
+     * The position is left as it was.
+     */
+    public void addMove(Position position, int move) {
+        moves.add(San.toSan(position, move));
+    }
+
+    /**
+     * Plays the moves from the starting position, returning them as packed moves.
+     *
+     * @throws IllegalArgumentException at the first move that isn't legal
+     */
+    public int[] replay() {
+        Position position = new Position(getStartFen());
+        int[] packed = new int[moves.size()];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = San.parse(position, moves.get(i));
+            position.movePiece(packed[i]);
+        }
+        return packed;
+    }
+
+    // Position after the last move, throws IllegalArgumentException like replay()
+    public Position getPosition() {
+        Position position = new Position(getStartFen());
+        for (String san : moves) {
+            position.movePiece(San.parse(position, san));
+        }
+        return position;
+    }
+}
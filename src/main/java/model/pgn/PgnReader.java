@@ -0,0 +1,209 @@
+package model.pgn;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the games of a PGN stream one at a time, holding only the game being read, so files of
+ * any size can be gone through in constant memory:
+ *
+ *     try (PgnReader reader = new PgnReader(Files.newBufferedReader(path))) {
+ *         for (PgnGame game = reader.next(); game != null; game = reader.next()) { ... }
+ *     }
+ *
+ * Comments, variations, numeric annotation glyphs and escape lines are skipped, only the tags
+ * and the main line's moves are kept. Moves aren't checked here, see PgnGame.replay().
+ */
+public class PgnReader implements Closeable {
+
+    private static final int NONE = -2;
+
+    private final Reader in;
+    // Read in blocks rather than through BufferedReader, whose read() locks on every character
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+    // Character read ahead, NONE if there isn't one
+    private int peeked = NONE;
+    private final StringBuilder token = new StringBuilder();
+
+    public PgnReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Next game of the stream, or null at its end. A game ends at its result, or where the next
+     * game's tags start when the result is missing.
+     *
+     * @throws IllegalArgumentException if a tag is malformed
+     */
+    public PgnGame next() throws IOException {
+        PgnGame game = null;
+        boolean inMovetext = false;
+        int c;
+        while ((c = read()) != -1) {
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            switch (c) {
+                case '[' -> {
+                    if (inMovetext) { // a new game, this one had no result
+                        peeked = c;
+                        return game;
+                    }
+                    if (game == null) {
+                        game = new PgnGame();
+                    }
+                    readTag(game);
+                }
+                case '{' -> skipComment();
+                case ';', '%' -> skipLine();
+                case '(' -> skipVariation();
+                case '$' -> readToken(c); // numeric annotation glyph
+                case ')', '}' -> { } // unbalanced, nothing to skip
+                default -> {
+                    if (game == null) {
+                        game = new PgnGame();
+                    }
+                    inMovetext = true;
+                    String text = readToken(c);
+                    if (isResult(text)) {
+                        if (game.getResult().equals(PgnGame.UNFINISHED)) {
+                            game.setResult(text);
+                        }
+                        return game;
+                    }
+                    String move = stripMoveNumber(text);
+                    if (!move.isEmpty()) {
+                        game.addMove(stripAnnotation(move));
+                    }
+                }
+            }
+        }
+        return game;
+    }
+
+    private int read() throws IOException {
+        if (peeked != NONE) {
+            int c = peeked;
+            peeked = NONE;
+            return c;
+        }
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+
+    // [Name "value"], the opening bracket already read
+    private void readTag(PgnGame game) throws IOException {
+        token.setLength(0);
+        int c = read();
+        while (c != -1 && !Character.isWhitespace(c) && c != '"' && c != ']') {
+            token.append((char) c);
+            c = read();
+        }
+        String name = token.toString();
+        while (c != -1 && c != '"' && c != ']') {
+            c = read();
+        }
+        if (c != '"' || name.isEmpty()) {
+            throw new IllegalArgumentException("Invalid PGN tag: " + name);
+        }
+
+        token.setLength(0);
+        for (c = read(); c != -1 && c != '"'; c = read()) {
+            if (c == '\\') {
+                c = read();
+            }
+            token.append((char) c);
+        }
+        while (c != -1 && c != ']') {
+            c = read();
+        }
+        game.setTag(name, token.toString());
+    }
+
+    // Everything up to the next whitespace or delimiter, starting with an already read character
+    private String readToken(int first) throws IOException {
+        token.setLength(0);
+        token.append((char) first);
+        int c;
+        while ((c = read()) != -1 && !Character.isWhitespace(c) && "{}()[];$".indexOf(c) < 0) {
+            token.append((char) c);
+        }
+        if (c != -1 && !Character.isWhitespace(c)) {
+            peeked = c;
+        }
+        return token.toString();
+    }
+
+    private void skipComment() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && c != '}');
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c != -1 && c != '\n');
+    }
+
+    // Variations nest, and their comments may hold parentheses of their own
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        int c;
+        while (depth > 0 && (c = read()) != -1) {
+            switch (c) {
+                case '(' -> depth++;
+                case ')' -> depth--;
+                case '{' -> skipComment();
+                case ';' -> skipLine();
+                default -> { }
+            }
+        }
+    }
+
+    private static boolean isResult(String text) {
+        return text.equals(PgnGame.WHITE_WINS) || text.equals(PgnGame.BLACK_WINS)
+                || text.equals(PgnGame.DRAW) || text.equals(PgnGame.UNFINISHED);
+    }
+
+    // "12.", "12..." and "12.e4" all carry a move number in front of the move, if any
+    private static String stripMoveNumber(String text) {
+        int i = 0;
+        while (i < text.length() && Character.isDigit(text.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || i == text.length() || text.charAt(i) != '.') {
+            return text;
+        }
+        while (i < text.length() && text.charAt(i) == '.') {
+            i++;
+        }
+        return text.substring(i);
+    }
+
+    // "e4!?" -> "e4", move quality marks aren't part of the move
+    private static String stripAnnotation(String move) {
+        int end = move.length();
+        while (end > 0 && (move.charAt(end - 1) == '!' || move.charAt(end - 1) == '?')) {
+            end--;
+        }
+        return end == move.length() ? move : move.substring(0, end);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
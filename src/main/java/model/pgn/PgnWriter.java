@@ -0,0 +1,106 @@
+package model.pgn;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Appends games to a PGN stream one at a time, flushing after each, so a file being written
+ * during a match or a long run always holds every finished game. Safe to share between threads,
+ * games are never interleaved.
+ *
+ * Output follows the PGN export format: the Seven Tag Roster first, then the other tags,
+ * a blank line, the movetext wrapped at 80 columns and ended by the result, and a blank line.
+ */
+public class PgnWriter implements Closeable, Flushable {
+
+    static final int LINE_LENGTH = 80;
+
+    private final Writer out;
+
+    public PgnWriter(Writer out) {
+        this.out = out;
+    }
+
+    public synchronized void write(PgnGame game) throws IOException {
+        StringBuilder text = new StringBuilder();
+        Map<String, String> tags = game.getTags();
+        for (String name : PgnGame.ROSTER) {
+            appendTag(text, name, tags.get(name));
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!isRoster(tag.getKey())) {
+                appendTag(text, tag.getKey(), tag.getValue());
+            }
+        }
+        text.append('\n');
+
+        // Move numbers count from the starting position's full move number, black's first
+        // move gets "n..." when the game starts with black to move
+        String[] fen = game.getStartFen().trim().split("\\s+");
+        boolean whiteToMove = fen.length < 2 || fen[1].equals("w");
+        int moveNumber = fen.length < 6 ? 1 : Integer.parseInt(fen[5]);
+
+        List<String> moves = game.getMoves();
+        int lineStart = text.length();
+        for (int i = 0; i < moves.size(); i++) {
+            String token = moves.get(i);
+            if (whiteToMove) {
+                token = moveNumber + ". " + token;
+            } else if (i == 0) {
+                token = moveNumber + "... " + token;
+            }
+            lineStart = appendToken(text, token, lineStart);
+            if (!whiteToMove) {
+                moveNumber++;
+            }
+            whiteToMove = !whiteToMove;
+        }
+        appendToken(text, game.getResult(), lineStart);
+        text.append("\n\n");
+
+        out.write(text.toString());
+        out.flush();
+    }
+
+    private static void appendTag(StringBuilder text, String name, String value) {
+        String escaped = (value == null ? "?" : value).replace("\\", "\\\\").replace("\"", "\\\"");
+        text.append('[').append(name).append(" \"").append(escaped).append("\"]\n");
+    }
+
+    private static boolean isRoster(String name) {
+        for (String roster : PgnGame.ROSTER) {
+            if (roster.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Adds the token on the current line, or starts a new one if it wouldn't fit
+    private static int appendToken(StringBuilder text, String token, int lineStart) {
+        if (text.length() > lineStart) {
+            if (text.length() - lineStart + 1 + token.length() > LINE_LENGTH) {
+                text.append('\n');
+                lineStart = text.length();
+            } else {
+                text.append(' ');
+            }
+        }
+        text.append(token);
+        return lineStart;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
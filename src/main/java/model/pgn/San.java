@@ -0,0 +1,165 @@
+package model.pgn;
+
+import model.PackedMove;
+import model.Position;
+
+/**
+ * Standard Algebraic Notation, the move text of PGN files (e.g. "Nbd7", "exd5", "e8=Q+", "O-O").
+ * Both directions go through the legal moves of the position, so a written move names exactly
+ * one legal move and a read one must match exactly one.
+ */
+public final class San {
+
+    private static final String PIECE_LETTERS = "PNBRQK";
+
+    private San() {
+    }
+
+    /**
+     * SAN of a legal move in the position, with its check or mate suffix.
+     * The position is left as it was.
+     */
+    public static String toSan(Position position, int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int type = Position.typeOf(position.getPiece(from));
+        int[] legal = position.getAllPossibleMoves();
+
+        StringBuilder san = new StringBuilder();
+        if (PackedMove.isCastling(move)) {
+            san.append(Position.col(to) > Position.col(from) ? "O-O" : "O-O-O");
+        } else {
+            boolean capture = PackedMove.isCapture(move) || PackedMove.isEnPassant(move);
+            if (type == Position.PAWN) {
+                if (capture) {
+                    san.append(PackedMove.squareName(from).charAt(0));
+                }
+            } else {
+                san.append(PIECE_LETTERS.charAt(type));
+                san.append(disambiguation(position, legal, move));
+            }
+            if (capture) {
+                san.append('x');
+            }
+            san.append(PackedMove.squareName(to));
+            if (PackedMove.isPromotion(move)) {
+                san.append('=').append(PIECE_LETTERS.charAt(PackedMove.promotion(move)));
+            }
+        }
+
+        position.movePiece(move);
+        if (position.inCheck()) {
+            san.append(position.getAllPossibleMoves().length == 0 ? '#' : '+');
+        }
+        position.undoLastMove();
+        return san.toString();
+    }
+
+    // Starting file, rank or both when another piece of the same type can reach the same square
+    private static String disambiguation(Position position, int[] legal, int move) {
+        int from = PackedMove.from(move);
+        boolean ambiguous = false;
+        boolean sameFile = false;
+        boolean sameRank = false;
+        for (int other : legal) {
+            int otherFrom = PackedMove.from(other);
+            if (otherFrom == from || PackedMove.to(other) != PackedMove.to(move)
+                    || position.getPiece(otherFrom) != position.getPiece(from)) {
+                continue;
+            }
+            ambiguous = true;
+            sameFile |= Position.col(otherFrom) == Position.col(from);
+            sameRank |= Position.row(otherFrom) == Position.row(from);
+        }
+
+        String square = PackedMove.squareName(from);
+        if (!ambiguous) {
+            return "";
+        } else if (!sameFile) {
+            return square.substring(0, 1);
+        } else if (!sameRank) {
+            return square.substring(1);
+        }
+        return square;
+    }
+
+    /**
+     * Legal move of the position written in SAN. Check, mate and annotation suffixes are optional,
+     * castling may be written with zeros, and the "=" before a promotion piece may be left out.
+     *
+     * @throws IllegalArgumentException if the text isn't exactly one legal move
+     */
+    public static int parse(Position position, String text) {
+        String san = text.replaceAll("[+#!?]+$", "");
+        int[] legal = position.getAllPossibleMoves();
+
+        if (san.equals("O-O") || san.equals("0-0") || san.equals("O-O-O") || san.equals("0-0-0")) {
+            boolean kingside = san.length() == 3;
+            for (int move : legal) {
+                if (PackedMove.isCastling(move)
+                        && (Position.col(PackedMove.to(move)) > Position.col(PackedMove.from(move))) == kingside) {
+                    return move;
+                }
+            }
+            throw new IllegalArgumentException("Illegal move: " + text);
+        }
+
+        // Piece letter, then disambiguation and target square, then promotion
+        int type = Position.PAWN;
+        int start = 0;
+        if (!san.isEmpty() && PIECE_LETTERS.indexOf(san.charAt(0)) > 0) {
+            type = PIECE_LETTERS.indexOf(san.charAt(0));
+            start = 1;
+        }
+        int promotion = 0;
+        int end = san.length();
+        if (end >= 2 && PIECE_LETTERS.indexOf(san.charAt(end - 1)) > 0 && type == Position.PAWN) {
+            promotion = PIECE_LETTERS.indexOf(san.charAt(end - 1));
+            end -= san.charAt(end - 2) == '=' ? 2 : 1;
+        }
+        String squares = san.substring(start, end).replace("x", "");
+        if (squares.length() < 2 || squares.length() > 4) {
+            throw new IllegalArgumentException("Invalid move: " + text);
+        }
+        int to = parseSquare(squares.substring(squares.length() - 2), text);
+        String hint = squares.substring(0, squares.length() - 2);
+
+        int found = PackedMove.NONE;
+        for (int move : legal) {
+            int from = PackedMove.from(move);
+            if (PackedMove.to(move) != to || Position.typeOf(position.getPiece(from)) != type
+                    || PackedMove.promotion(move) != promotion || PackedMove.isCastling(move)
+                    || !matches(hint, from)) {
+                continue;
+            }
+            if (found != PackedMove.NONE) {
+                throw new IllegalArgumentException("Ambiguous move: " + text);
+            }
+            found = move;
+        }
+        if (found == PackedMove.NONE) {
+            throw new IllegalArgumentException("Illegal move: " + text);
+        }
+        return found;
+    }
+
+    // Disambiguation hint ("", "b", "1" or "b1") agrees with the starting square
+    private static boolean matches(String hint, int from) {
+        String square = PackedMove.squareName(from);
+        for (char c : hint.toCharArray()) {
+            if (square.indexOf(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseSquare(String name, String text) {
+        int col = name.charAt(0) - 'a';
+        int row = '8' - name.charAt(1);
+        if (col < 0 || col > 7 || row < 0 || row > 7) {
+            throw new IllegalArgumentException("Invalid move: " + text);
+        }
+        return Position.square(row, col);
+    }
+}
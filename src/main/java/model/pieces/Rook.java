@@ -1,7 +1,9 @@
 package model.pieces;
+import model.Attacks;
 import model.Board;
 import model.Move;
 import model.Piece;
+import model.Position;
 
 import java.util.ArrayList;
 import java.util.Stack;
@@ -10,12 +12,6 @@ import java.util.Stack;
  * Rook rules - Moves any number of squares horizontally or vertically
  */
 public class Rook extends Piece {
-    int[][] directions = {
-            {-1, 0}, // Up
-            {1, 0},  // Down
-            {0, -1}, // Left
-            {0, 1}   // Right
-    };
     Stack<Move> lastMoves;
 
     public Rook(boolean isWhite, int col, int row) {
@@ -30,38 +26,10 @@ public class Rook extends Piece {
 
     @Override
     public ArrayList<int[]> availableMoves(Board board) {
-        ArrayList<int[]> legalMoves = new ArrayList<>();
-        int currRow = this.row;
-        int currCol = this.col;
-
-        // Iterate in each direction until blocked
-        for (int[] direction : directions) {
-            int nextRow = currRow + direction[0];
-            int nextCol = currCol + direction[1];
-
-            while (isWithinBounds(nextRow, nextCol)) {
-                Piece targetPiece = board.findPieceByLocation(nextRow, nextCol);
-
-                if (targetPiece == null) {
-                    // Empty square, add to legal moves
-                    legalMoves.add(new int[]{nextRow, nextCol});
-                } else {
-                    // Square occupied by a piece
-                    if (targetPiece.isWhite() == getOppositeColor()) {
-                        // Opponent's piece can be captured
-                        legalMoves.add(new int[]{nextRow, nextCol});
-                    }
-                    // Break once we've encountered a piece
-                    break;
-                }
-
-                // Move next step in  current direction
-                nextRow += direction[0];
-                nextCol += direction[1];
-            }
-        }
-
-        return legalMoves;
+        // iterate through each direction until blocked, now a single table lookup
+        long targets = Attacks.rookAttacks(Position.square(row, col), board.getOccupancy())
+                & ~board.getOccupancy(isWhite());
+        return toMoveList(targets);
     }
 
     public Stack<Move> getLastMoves() {
@@ -0,0 +1,127 @@
+package tools;
+
+import controller.OpeningBook;
+import model.Position;
+import model.pgn.PgnGame;
+import model.pgn.PgnReader;
+import model.pgn.San;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a Polyglot opening book (see controller.OpeningBook) from the first moves of the games
+ * in a PGN file. A move gets 2 points each time the side that played it went on to win and 1 for
+ * a draw, so moves that only lost never make it into the book.
+ *
+ * Usage: java tools.BookBuilder games.pgn book.bin [plies]
+ */
+public class BookBuilder {
+
+    static final int DEFAULT_PLIES = 16;
+
+    // Points of each move (by its book encoding) in each position (by key)
+    private final Map<Long, Map<Integer, Integer>> points = new HashMap<>();
+    private final int plies;
+    private int games;
+    private int skipped;
+
+    public BookBuilder(int plies) {
+        this.plies = plies;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java tools.BookBuilder games.pgn book.bin [plies]");
+            return;
+        }
+        BookBuilder builder = new BookBuilder(args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PLIES);
+        try (PgnReader reader = new PgnReader(Files.newBufferedReader(Path.of(args[0])))) {
+            for (PgnGame game = reader.next(); game != null; game = reader.next()) {
+                builder.add(game);
+            }
+        }
+        int entries = builder.write(Path.of(args[1]));
+        System.out.printf("%d games (%d skipped), %d positions, %d entries%n",
+                builder.games, builder.skipped, builder.points.size(), entries);
+    }
+
+    // Counts the game's opening moves, games with an illegal move or no result are skipped
+    public void add(PgnGame game) {
+        int whitePoints = switch (game.getResult()) {
+            case PgnGame.WHITE_WINS -> 2;
+            case PgnGame.DRAW -> 1;
+            case PgnGame.BLACK_WINS -> 0;
+            default -> -1;
+        };
+        if (whitePoints < 0) {
+            skipped++;
+            return;
+        }
+
+        List<Long> keys = new ArrayList<>();
+        List<Integer> moves = new ArrayList<>();
+        boolean whiteFirst;
+        try {
+            Position position = new Position(game.getStartFen());
+            whiteFirst = position.isWhiteToMove();
+            List<String> sans = game.getMoves();
+            for (int i = 0; i < Math.min(plies, sans.size()); i++) {
+                int move = San.parse(position, sans.get(i));
+                keys.add(position.getZobristKey());
+                moves.add(OpeningBook.encode(move));
+                position.movePiece(move);
+            }
+        } catch (IllegalArgumentException e) {
+            skipped++;
+            return;
+        }
+
+        games++;
+        for (int i = 0; i < keys.size(); i++) {
+            int gained = whiteFirst == (i % 2 == 0) ? whitePoints : 2 - whitePoints;
+            points.computeIfAbsent(keys.get(i), k -> new HashMap<>()).merge(moves.get(i), gained, Integer::sum);
+        }
+    }
+
+    /**
+     * Writes the book sorted by key, and by weight within a position. Weights are scaled down
+     * where the most played move would overflow 16 bits.
+     *
+     * @return - number of entries written
+     */
+    public int write(Path file) throws IOException {
+        List<Long> keys = new ArrayList<>(points.keySet());
+        keys.sort(Long::compareUnsigned);
+
+        int entries = 0;
+        try (OutputStream stream = Files.newOutputStream(file);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            for (long key : keys) {
+                List<Map.Entry<Integer, Integer>> moves = new ArrayList<>(points.get(key).entrySet());
+                moves.sort((a, b) -> b.getValue() - a.getValue());
+                int max = moves.get(0).getValue();
+                for (Map.Entry<Integer, Integer> move : moves) {
+                    int weight = max > 0xFFFF ? (int) ((long) move.getValue() * 0xFFFF / max) : move.getValue();
+                    if (weight == 0) {
+                        continue;
+                    }
+                    out.writeLong(key);
+                    out.writeShort(move.getKey());
+                    out.writeShort(weight);
+                    out.writeInt(0);
+                    entries++;
+                }
+            }
+        }
+        return entries;
+    }
+}
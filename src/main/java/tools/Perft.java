@@ -0,0 +1,175 @@
+package tools;
+
+import model.PackedMove;
+import model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Perft counts every position reachable in a number of moves, to be compared against published
+ * reference numbers (https://www.chessprogramming.org/Perft_Results). This version is built for
+ * deep runs: root moves are counted in parallel, each thread on its own copy of the position,
+ * subtree counts are cached by position and depth since many move orders transpose, and the
+ * last ply is counted from the length of the move list instead of playing every move.
+ *
+ * Usage: java tools.Perft depth [fen] [threads] [hash MB]
+ * Prints the count of each root move (divide), the total, and the throughput.
+ */
+public class Perft {
+
+    private final int threads;
+    private final PerftHash hash;
+
+    public Perft(int threads, int hashSizeMb) {
+        this.threads = Math.max(1, threads);
+        this.hash = hashSizeMb > 0 ? new PerftHash(hashSizeMb) : null;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java tools.Perft depth [fen] [threads] [hash MB]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        String fen = args.length > 1 ? args[1] : Position.START_FEN;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int hashSizeMb = args.length > 3 ? Integer.parseInt(args[3]) : 256;
+
+        Position position = new Position(fen);
+        Perft perft = new Perft(threads, hashSizeMb);
+
+        long start = System.nanoTime();
+        long[] counts = perft.divide(position, depth);
+        long time = System.nanoTime() - start;
+
+        int[] moves = position.getAllPossibleMoves();
+        long total = 0;
+        for (int i = 0; i < moves.length; i++) {
+            System.out.println(PackedMove.toString(moves[i]) + ": " + counts[i]);
+            total += counts[i];
+        }
+        System.out.println();
+        System.out.println("Moves: " + moves.length);
+        System.out.println("Nodes: " + total);
+        System.out.printf("Time: %d ms (%d nodes/s, %d threads)%n",
+                time / 1_000_000, total * 1_000_000_000L / Math.max(1, time), threads);
+    }
+
+    // Total number of positions after depth moves
+    public long count(Position position, int depth) throws InterruptedException {
+        long total = 0;
+        for (long count : divide(position, depth)) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Counts positions below each root move, in the order of position.getAllPossibleMoves().
+     * The position itself isn't modified.
+     */
+    public long[] divide(Position position, int depth) throws InterruptedException {
+        int[] moves = position.getAllPossibleMoves();
+        long[] counts = new long[moves.length];
+        if (depth <= 0) {
+            return counts;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>(moves.length);
+            for (int move : moves) {
+                Position copy = new Position(position);
+                results.add(pool.submit(() -> {
+                    copy.movePiece(move);
+                    return perft(copy, depth - 1, new int[depth][Position.MAX_MOVES]);
+                }));
+            }
+            for (int i = 0; i < moves.length; i++) {
+                counts[i] = results.get(i).get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Perft failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return counts;
+    }
+
+    private long perft(Position position, int depth, int[][] buffers) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        int[] moves = buffers[depth - 1];
+        int count = position.getAllPossibleMoves(moves);
+        // Bulk counting, the moves of the last ply don't need to be played
+        if (depth == 1) {
+            return count;
+        }
+
+        long key = position.getZobristKey();
+        if (hash != null) {
+            long cached = hash.get(key, depth);
+            if (cached >= 0) {
+                return cached;
+            }
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            position.movePiece(moves[i]);
+            nodes += perft(position, depth - 1, buffers);
+            position.undoLastMove();
+        }
+
+        if (hash != null) {
+            hash.put(key, depth, nodes);
+        }
+        return nodes;
+    }
+
+    /*
+     * Subtree counts by position and depth, shared by all threads without locks.
+     * Like the search's transposition table, each slot stores its check key XOR the count, so an entry
+     * torn by two threads writing at once fails the check instead of returning a wrong count.
+     */
+    static final class PerftHash {
+        private final long[] checks;
+        private final long[] counts;
+        private final int mask;
+
+        PerftHash(int sizeMb) {
+            long entries = Math.max(1, (long) sizeMb * 1024 * 1024 / 16);
+            int size = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+            checks = new long[size];
+            counts = new long[size];
+            mask = size - 1;
+        }
+
+        // Count stored for the position at this depth, or -1
+        long get(long key, int depth) {
+            long check = check(key, depth);
+            int index = (int) check & mask;
+            long count = counts[index];
+            return (checks[index] ^ count) == check ? count : -1;
+        }
+
+        void put(long key, int depth, long count) {
+            long check = check(key, depth);
+            int index = (int) check & mask;
+            counts[index] = count;
+            checks[index] = check ^ count;
+        }
+
+        // Mixes the depth into the key so the same position at different depths gets its own entry
+        private static long check(long key, int depth) {
+            return key ^ (depth * 0x9E3779B97F4A7C15L);
+        }
+    }
+}
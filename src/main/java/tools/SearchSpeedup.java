@@ -0,0 +1,49 @@
+package tools;
+
+import controller.AIPlayer;
+import model.Board;
+import model.Move;
+
+/**
+ * Compares the two parallel search schemes of AIPlayer, Lazy SMP (shared transposition table)
+ * and Young Brothers Wait (fork/join splitting), at a fixed depth for 1, 2, 4... threads.
+ * Prints node counts, time and the speedup over one thread of the same scheme.
+ *
+ * Usage: java tools.SearchSpeedup [depth] [max threads]
+ */
+public class SearchSpeedup {
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        // Warm up the JIT so the single thread baseline isn't penalised
+        run(false, 1, Math.min(depth, 5));
+
+        System.out.printf("%-10s %8s %12s %10s %12s %8s%n", "scheme", "threads", "nodes", "ms", "nodes/s", "speedup");
+        for (boolean forkJoin : new boolean[]{false, true}) {
+            long baseline = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                AIPlayer ai = run(forkJoin, threads, depth);
+                if (threads == 1) {
+                    baseline = ai.totalTime;
+                }
+                System.out.printf("%-10s %8d %12d %10d %12d %8.2f%n",
+                        forkJoin ? "ybwc" : "lazy-smp", threads, ai.totalNodes, ai.totalTime / 1_000_000,
+                        ai.totalNodes * 1_000_000_000L / Math.max(1, ai.totalTime), (double) baseline / ai.totalTime);
+                ai.setForkJoin(false);
+            }
+        }
+    }
+
+    // Searches the position after 1. e4 with a fresh transposition table
+    private static AIPlayer run(boolean forkJoin, int threads, int depth) {
+        Board board = new Board();
+        board.movePiece(new Move(board.findPieceByLocation(6, 4), 4, 4));
+
+        AIPlayer ai = new AIPlayer(64, threads);
+        ai.setForkJoin(forkJoin);
+        ai.getBestMoveAlphaBeta(board, depth);
+        return ai;
+    }
+}
@@ -0,0 +1,376 @@
+package tools;
+
+import controller.AIPlayer;
+import model.Board;
+import model.Epd;
+import model.Move;
+import model.PackedMove;
+import model.Position;
+import model.pgn.PgnGame;
+import model.pgn.PgnWriter;
+import model.pieces.Queen;
+
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays the computer against itself without the GUI, many games at once, to measure strength and
+ * speed after a change to the search or evaluation. Two engines, A and B, differ only in their
+ * search limit: a fixed depth ("d5") or a time per move in milliseconds ("100"). Every opening
+ * is played twice with colors swapped, each game on its own board, one game per pool thread.
+ *
+ * Games end on checkmate, stalemate, the fifty move rule, threefold repetition, insufficient
+ * material, or are scored as draws after MAX_PLIES. Each finished game is written as a CSV row
+ * (number, opening, white, black, result, reason, plies, moves) as soon as it ends, and to a
+ * PGN file as well when one is given.
+ * The summary gives A's score and Elo difference with a 95% error margin, games per second,
+ * and the percentiles of the time each engine took per move.
+ *
+ * Usage: java tools.SelfPlay openings games [limit A] [limit B] [threads] [results.csv] [games.pgn]
+ * The openings file has one FEN or EPD per line, "-" plays every game from the start position.
+ */
+public class SelfPlay {
+
+    // Games still going after this many plies are scored as draws
+    static final int MAX_PLIES = 400;
+    static final int HASH_SIZE = 16;
+
+    // Search limit of engine A (0) and B (1), a depth or a time per move, the other is 0
+    private final int[] depth = new int[2];
+    private final long[] moveTime = new long[2];
+    private final int threads;
+    private final PrintStream csv;
+    private PgnWriter pgn;
+
+    // Totals from A's point of view, and the time of every move by engine, guarded by this
+    private int wins, draws, losses;
+    private final long[][] latencies = {new long[1024], new long[1024]};
+    private final int[] latencyCount = new int[2];
+
+    // Engines of each pool thread, reused from game to game
+    private final ThreadLocal<AIPlayer[]> engines = ThreadLocal.withInitial(
+            () -> new AIPlayer[]{new AIPlayer(HASH_SIZE), new AIPlayer(HASH_SIZE)});
+
+    // csv - where finished games are written, or null
+    public SelfPlay(String limitA, String limitB, int threads, PrintStream csv) {
+        setLimit(0, limitA);
+        setLimit(1, limitB);
+        this.threads = Math.max(1, threads);
+        this.csv = csv;
+    }
+
+    // Also writes every finished game to the PGN stream
+    public void setPgnWriter(PgnWriter pgn) {
+        this.pgn = pgn;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java tools.SelfPlay openings games [limit A] [limit B] [threads] [results.csv] [games.pgn]");
+            return;
+        }
+        List<String> openings = readOpenings(args[0]);
+        int games = Integer.parseInt(args[1]);
+        String limitA = args.length > 2 ? args[2] : "d4";
+        String limitB = args.length > 3 ? args[3] : limitA;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        PrintStream csv = args.length > 5 ? new PrintStream(new FileOutputStream(args[5]), false, "UTF-8") : null;
+        PgnWriter pgn = args.length > 6 ? new PgnWriter(new FileWriter(args[6], StandardCharsets.UTF_8)) : null;
+        try {
+            SelfPlay match = new SelfPlay(limitA, limitB, threads, csv);
+            match.setPgnWriter(pgn);
+            long start = System.nanoTime();
+            match.play(openings, games);
+            long time = System.nanoTime() - start;
+            match.printSummary(System.out, limitA, limitB, time);
+        } finally {
+            if (csv != null) {
+                csv.close();
+            }
+            if (pgn != null) {
+                pgn.close();
+            }
+        }
+    }
+
+    // FEN or EPD lines of the file, blank lines and # comments skipped
+    static List<String> readOpenings(String file) throws IOException {
+        List<String> openings = new ArrayList<>();
+        if (file.equals("-")) {
+            openings.add(Position.START_FEN);
+            return openings;
+        }
+        for (String line : Files.readAllLines(Path.of(file))) {
+            if (!line.isBlank() && !line.trim().startsWith("#")) {
+                openings.add(line.trim());
+            }
+        }
+        if (openings.isEmpty()) {
+            throw new IllegalArgumentException("No openings in " + file);
+        }
+        return openings;
+    }
+
+    private void setLimit(int engine, String limit) {
+        if (limit.startsWith("d")) {
+            depth[engine] = Integer.parseInt(limit.substring(1));
+        } else {
+            moveTime[engine] = Long.parseLong(limit);
+        }
+        if (depth[engine] <= 0 && moveTime[engine] <= 0) {
+            throw new IllegalArgumentException("Invalid search limit: " + limit);
+        }
+    }
+
+    /**
+     * Plays the games, going through the openings in order with A taking white in even games and
+     * black in odd ones, and returns once all have finished.
+     */
+    public void play(List<String> openings, int games) throws InterruptedException {
+        if (csv != null) {
+            csv.println("game,opening,white,black,result,reason,plies,moves");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < games; i++) {
+            int number = i + 1;
+            String opening = openings.get(i / 2 % openings.size());
+            boolean aWhite = i % 2 == 0;
+            pool.execute(() -> {
+                try {
+                    playGame(number, opening, aWhite);
+                } catch (RuntimeException e) {
+                    System.err.println("Game " + number + " failed: " + e);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+    private void playGame(int number, String opening, boolean aWhite) {
+        AIPlayer[] players = engines.get();
+        players[0].newGame(aWhite);
+        players[1].newGame(!aWhite);
+
+        Epd epd = Epd.parse(opening);
+        Board board = epd.toBoard();
+        PgnGame game = new PgnGame(epd.getFen());
+        Map<Long, Integer> seen = new HashMap<>();
+        seen.put(board.getZobristKey(), 1);
+        StringBuilder moves = new StringBuilder();
+        long[][] times = {new long[MAX_PLIES], new long[MAX_PLIES]};
+        int[] timeCount = new int[2];
+
+        String result = "1/2-1/2";
+        String reason = "max plies";
+        int ply = 0;
+        for (; ply < MAX_PLIES; ply++) {
+            Position position = new Position(board);
+            int[] legal = position.getAllPossibleMoves();
+            if (legal.length == 0) {
+                if (position.inCheck()) {
+                    result = board.isWhiteToMove() ? "0-1" : "1-0";
+                    reason = "checkmate";
+                } else {
+                    reason = "stalemate";
+                }
+                break;
+            }
+            if (board.getHalfmoveClock() >= 100) {
+                reason = "fifty moves";
+                break;
+            }
+            if (seen.get(board.getZobristKey()) >= 3) {
+                reason = "repetition";
+                break;
+            }
+            if (insufficientMaterial(position)) {
+                reason = "insufficient material";
+                break;
+            }
+
+            int engine = board.isWhiteToMove() == aWhite ? 0 : 1;
+            long start = System.nanoTime();
+            Move move = depth[engine] > 0
+                    ? players[engine].getBestMoveAlphaBeta(board, depth[engine])
+                    : players[engine].getBestMoveIterative(board, moveTime[engine]);
+            times[engine][timeCount[engine]++] = System.nanoTime() - start;
+
+            int packed = toPacked(legal, move);
+            moves.append(moves.length() == 0 ? "" : " ").append(PackedMove.toString(packed));
+            game.addMove(position, packed);
+            play(board, move);
+            seen.merge(board.getZobristKey(), 1, Integer::sum);
+        }
+
+        game.setTag("Event", "SelfPlay");
+        game.setTag("Date", LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+        game.setTag("Round", String.valueOf(number));
+        game.setTag("White", aWhite ? "A " + limitName(0) : "B " + limitName(1));
+        game.setTag("Black", aWhite ? "B " + limitName(1) : "A " + limitName(0));
+        game.setTag("Termination", reason);
+        game.setResult(result);
+        record(number, opening, aWhite, result, reason, ply, moves, times, timeCount, game);
+    }
+
+    private String limitName(int engine) {
+        return depth[engine] > 0 ? "d" + depth[engine] : moveTime[engine] + "ms";
+    }
+
+    // Plays an engine move, promoting white's pawns to a queen as the board already does for black
+    private static void play(Board board, Move move) {
+        board.movePiece(move);
+        if (move.getPiece().isWhite() && board.isPromotePawn(move)) {
+            board.movePiece(new Move(new Queen(true, move.getTargetRow(), move.getTargetCol()),
+                    move.getTargetRow(), move.getTargetCol()));
+        }
+    }
+
+    // Legal move the board's move stands for, the board always promotes to a queen
+    private static int toPacked(int[] legal, Move move) {
+        int from = Position.square(move.getCurrRow(), move.getCurrCol());
+        int to = Position.square(move.getTargetRow(), move.getTargetCol());
+        for (int packed : legal) {
+            if (PackedMove.from(packed) == from && PackedMove.to(packed) == to
+                    && (!PackedMove.isPromotion(packed) || PackedMove.promotion(packed) == Position.QUEEN)) {
+                return packed;
+            }
+        }
+        throw new IllegalStateException("Engine played an illegal move");
+    }
+
+    // Neither side can mate: no pawns, rooks or queens and at most one minor piece left
+    public static boolean insufficientMaterial(Position position) {
+        int minors = 0;
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            if ((position.getPieces(color, Position.PAWN) | position.getPieces(color, Position.ROOK)
+                    | position.getPieces(color, Position.QUEEN)) != 0) {
+                return false;
+            }
+            minors += Long.bitCount(position.getPieces(color, Position.KNIGHT) | position.getPieces(color, Position.BISHOP));
+        }
+        return minors <= 1;
+    }
+
+    private synchronized void record(int number, String opening, boolean aWhite, String result, String reason,
+                                     int plies, CharSequence moves, long[][] times, int[] timeCount, PgnGame game) {
+        double score = result.equals("1/2-1/2") ? 0.5 : result.equals("1-0") == aWhite ? 1 : 0;
+        if (score == 1) {
+            wins++;
+        } else if (score == 0) {
+            losses++;
+        } else {
+            draws++;
+        }
+        for (int engine = 0; engine < 2; engine++) {
+            int count = latencyCount[engine] + timeCount[engine];
+            if (count > latencies[engine].length) {
+                latencies[engine] = Arrays.copyOf(latencies[engine], Math.max(count, latencies[engine].length * 2));
+            }
+            System.arraycopy(times[engine], 0, latencies[engine], latencyCount[engine], timeCount[engine]);
+            latencyCount[engine] = count;
+        }
+
+        if (csv != null) {
+            csv.println(number + ",\"" + opening.replace("\"", "\"\"") + "\"," + (aWhite ? "A,B," : "B,A,") + result + "," + reason + ","
+                    + plies + "," + moves);
+            csv.flush();
+        }
+        if (pgn != null) {
+            try {
+                pgn.write(game);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public synchronized int getWins() {
+        return wins;
+    }
+
+    public synchronized int getDraws() {
+        return draws;
+    }
+
+    public synchronized int getLosses() {
+        return losses;
+    }
+
+    // Times of engine A (0) or B (1)'s moves so far in nanoseconds, sorted
+    public synchronized long[] getLatencies(int engine) {
+        long[] sorted = Arrays.copyOf(latencies[engine], latencyCount[engine]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private void printSummary(PrintStream out, String limitA, String limitB, long time) {
+        int wins = getWins();
+        int draws = getDraws();
+        int losses = getLosses();
+        int games = wins + draws + losses;
+        double score = games == 0 ? 0.5 : (wins + draws / 2.0) / games;
+        out.printf("Games: %d (A %s vs B %s, %d threads)%n", games, limitA, limitB, threads);
+        out.printf("Score of A: +%d =%d -%d (%.1f%%)%n", wins, draws, losses, 100 * score);
+        out.printf("Elo difference: %.1f +/- %.1f%n", elo(score), eloMargin(wins, draws, losses));
+        out.printf("Time: %d ms (%.2f games/s)%n", time / 1_000_000, games * 1e9 / Math.max(1, time));
+
+        out.printf("%-8s %8s %8s %8s %8s %8s%n", "engine", "moves", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (int engine = 0; engine < 2; engine++) {
+            long[] sorted = getLatencies(engine);
+            out.printf("%-8s %8d %8.1f %8.1f %8.1f %8.1f%n", engine == 0 ? "A" : "B", sorted.length,
+                    percentile(sorted, 50) / 1e6, percentile(sorted, 90) / 1e6,
+                    percentile(sorted, 99) / 1e6, percentile(sorted, 100) / 1e6);
+        }
+    }
+
+    // Elo difference that makes the expected score of the stronger side the given fraction
+    public static double elo(double score) {
+        if (score <= 0 || score >= 1) {
+            return score <= 0 ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * Half width of the 95% confidence interval of the Elo difference. The score's standard error
+     * comes from the spread of the game results, and the interval's ends are converted to Elo.
+     */
+    public static double eloMargin(int wins, int draws, int losses) {
+        int games = wins + draws + losses;
+        if (wins == games || losses == games) { // no spread to measure, and no finite Elo
+            return Double.POSITIVE_INFINITY;
+        }
+        double score = (wins + draws / 2.0) / games;
+        double variance = (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2)
+                + losses * Math.pow(score, 2)) / games;
+        double error = 1.96 * Math.sqrt(variance / games);
+        return (elo(score + error) - elo(score - error)) / 2;
+    }
+
+    // Nearest rank percentile of sorted values, 0 if there are none
+    public static long percentile(long[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+}
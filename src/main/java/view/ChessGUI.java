@@ -9,7 +9,6 @@ import javax.swing.border.LineBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Objects;
@@ -139,8 +138,8 @@ public class ChessGUI implements ActionListener {
         playerPanel.setBackground(Color.GRAY);
         playerPanel.setLayout(new GridLayout(1,2));
         // create panels for each player
-        humanPanel = createPlayerPanel("Human Player",  "w-king.png");
-        computerPanel = createPlayerPanel("Computer Player",  "b-king.png");
+        humanPanel = createPlayerPanel("Human Player",  true);
+        computerPanel = createPlayerPanel("Computer Player",  false);
         playerPanel.add(humanPanel);
         playerPanel.add(computerPanel);
 
@@ -155,14 +154,13 @@ public class ChessGUI implements ActionListener {
     }
 
     // Top right panel will display both players
-    private JPanel createPlayerPanel(String playerName, String iconPath) {
+    private JPanel createPlayerPanel(String playerName, boolean isWhite) {
         JPanel playerPanel = new JPanel(new GridBagLayout());
         playerPanel.setLayout(new BoxLayout(playerPanel, BoxLayout.Y_AXIS));
 
         playerPanel.add(Box.createVerticalGlue());
 
-        URL resource = getClass().getClassLoader().getResource(iconPath);
-        JLabel iconLabel = new JLabel(new ImageIcon(resource));
+        JLabel iconLabel = new JLabel(new ImageIcon(SpriteCache.get("king", isWhite, SpriteCache.BOARD_SIZE)));
         iconLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         playerPanel.add(iconLabel);
 
@@ -192,8 +190,8 @@ public class ChessGUI implements ActionListener {
         piecePanel.add(titlePanel, BorderLayout.NORTH);
 
         JPanel columnsPanel = new JPanel(new GridLayout(1,2));
-        JPanel whitePanel = createCapturedColumn('w', 0);
-        JPanel blackPanel = createCapturedColumn('b', 1);
+        JPanel whitePanel = createCapturedColumn(true, 0);
+        JPanel blackPanel = createCapturedColumn(false, 1);
         columnsPanel.add(whitePanel);
         columnsPanel.add(blackPanel);
 
@@ -203,7 +201,7 @@ public class ChessGUI implements ActionListener {
     JLabel[][] capturedCountLabels = new JLabel[2][5];
     String[] pieceNames = {"pawn", "knight", "bishop", "rook", "queen"};
 
-    private JPanel createCapturedColumn(char color, int row) {
+    private JPanel createCapturedColumn(boolean isWhite, int row) {
         JPanel column = new JPanel(new GridLayout(5, 1));
 
         for (int i = 0; i <pieceNames.length; i++) {
@@ -213,11 +211,7 @@ public class ChessGUI implements ActionListener {
             // Add piece image
             JLabel pieceIcon = new JLabel();
             pieceIcon.setHorizontalAlignment(SwingConstants.CENTER);
-            String imagePath = color + "-" + pieceNames[i] + ".png";
-            URL resource = getClass().getClassLoader().getResource(imagePath);
-            ImageIcon originalImage = new ImageIcon(resource);
-            Image scaledImage = originalImage.getImage().getScaledInstance(70, 70, Image.SCALE_SMOOTH);
-            pieceIcon.setIcon(new ImageIcon(scaledImage)); // Resize icon
+            pieceIcon.setIcon(new ImageIcon(SpriteCache.get(pieceNames[i], isWhite, SpriteCache.CAPTURED_SIZE)));
             piecePanel.add(pieceIcon, BorderLayout.CENTER);
 
             JLabel capturedCount = new JLabel("0");
@@ -264,6 +258,11 @@ public class ChessGUI implements ActionListener {
         int endRow = move.getTargetRow();
         int endCol = move.getTargetCol();
         buttons[endRow][endCol].setPiece(pieceMoved);
+
+        // Pawn taken en passant is beside the target square
+        if (move.isEnPassant()) {
+            buttons[prevRow][endCol].setPiece(null);
+        }
     }
 
     // Updates captured piece panel after each kill
@@ -32,7 +32,7 @@ public class PieceButton extends JButton {
             image = null; // clear image
         } else {
             isEmpty = false;
-            image = p.image;
+            image = SpriteCache.get(p.getType(), p.isWhite(), SpriteCache.BOARD_SIZE);
         }
 
         repaint(); // Request re-rendering to display the piece
@@ -0,0 +1,54 @@
+package view;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Piece images, shared by every square and panel that shows the same kind of piece.
+ * Each image is read and scaled the first time it's asked for at a given size, then reused,
+ * so the model's pieces carry no image data and creating one (e.g. a promoted queen during
+ * the computer's search) never touches the disk.
+ */
+public final class SpriteCache {
+
+    // Board squares are 100px, the same as the piece images
+    public static final int BOARD_SIZE = 100;
+    public static final int CAPTURED_SIZE = 70;
+
+    private static final Map<String, BufferedImage> SPRITES = new ConcurrentHashMap<>();
+
+    private SpriteCache() {
+    }
+
+    // Image of a piece type ("pawn", "knight"...), or null if it can't be loaded
+    public static BufferedImage get(String type, boolean isWhite, int size) {
+        String name = (isWhite ? 'w' : 'b') + "-" + type;
+        return SPRITES.computeIfAbsent(name + "@" + size, key -> load(name, size));
+    }
+
+    private static BufferedImage load(String name, int size) {
+        BufferedImage image;
+        try (InputStream in = SpriteCache.class.getResourceAsStream("/" + name + ".png")) {
+            image = in == null ? null : ImageIO.read(in);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        if (image == null || (image.getWidth() == size && image.getHeight() == size)) {
+            return image;
+        }
+
+        BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(image, 0, 0, size, size, null);
+        g.dispose();
+        return scaled;
+    }
+}
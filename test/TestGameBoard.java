@@ -1,15 +1,40 @@
 import controller.AIPlayer;
+import controller.OpeningBook;
+import controller.Search;
+import controller.TranspositionTable;
+import controller.UciEngine;
 import model.Board;
+import model.Epd;
 import model.Move;
+import model.PackedMove;
 import model.Piece;
+import model.PieceSquareTables;
+import model.Position;
+import model.pgn.PgnGame;
+import model.pgn.PgnReader;
+import model.pgn.PgnWriter;
+import model.pgn.San;
 import model.pieces.King;
 import model.pieces.Pawn;
 import model.pieces.Queen;
 import model.pieces.Rook;
 import org.junit.Before;
 import org.junit.Test;
-
+import tools.BookBuilder;
+import tools.Perft;
+import tools.SelfPlay;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.*;
 
@@ -124,6 +149,41 @@ public class TestGameBoard {
         }
     }
 
+    @Test
+    public void testInCheckByDiagonal() {
+        // Open f2 and put black queen on h4, attacking white king along the diagonal
+        board.placePiece(null, 6, 5);
+        board.placePiece(new Queen(false, 4, 7), 4, 7);
+        assertTrue("White king should be in check", board.inCheck(true));
+        assertFalse("Black king should not be in check", board.inCheck(false));
+
+        // Block the diagonal with a pawn on g3
+        board.placePiece(new Pawn(true, 5, 6), 5, 6);
+        assertFalse("Blocked queen should not give check", board.inCheck(true));
+    }
+
+    @Test
+    public void testZobristKey() {
+        long startKey = board.getZobristKey();
+        assertEquals("Board and bitboard position should hash the same", new Position().getZobristKey(), startKey);
+
+        // Same position reached in a different move order
+        board.movePiece(new Move(board.findPieceByLocation(7, 6), 5, 5));
+        board.movePiece(new Move(board.findPieceByLocation(0, 6), 2, 5));
+        board.movePiece(new Move(board.findPieceByLocation(7, 1), 5, 2));
+        long key = board.getZobristKey();
+        for (int i = 0; i < 3; i++) {
+            board.undoLastMove();
+        }
+        assertEquals("Undo should restore the original key", startKey, board.getZobristKey());
+
+        board.movePiece(new Move(board.findPieceByLocation(7, 1), 5, 2));
+        board.movePiece(new Move(board.findPieceByLocation(0, 6), 2, 5));
+        board.movePiece(new Move(board.findPieceByLocation(7, 6), 5, 5));
+        assertEquals("Transposed positions should have the same key", key, board.getZobristKey());
+        assertEquals(new Position(board, false).getZobristKey(), key);
+    }
+
     @Test
     public void PerftTest() {
         TestMoveGeneration testMoveGen = new TestMoveGeneration();
@@ -149,6 +209,468 @@ public class TestGameBoard {
         assertEquals("The number of positions generated at depth 4 is incorrect", expectedPositionsDepth4, actualPositionsDepth4);
     }
 
+    @Test
+    public void PerftTestBitboard() {
+        TestMoveGeneration testMoveGen = new TestMoveGeneration();
+        Position position = new Position();
+
+        assertEquals("The number of positions generated at depth 1 is incorrect", 20, testMoveGen.MoveGenerationTest(1, position));
+        assertEquals("The number of positions generated at depth 2 is incorrect", 400, testMoveGen.MoveGenerationTest(2, position));
+        assertEquals("The number of positions generated at depth 3 is incorrect", 8902, testMoveGen.MoveGenerationTest(3, position));
+        assertEquals("The number of positions generated at depth 4 is incorrect", 197281, testMoveGen.MoveGenerationTest(4, position));
+    }
+
+    @Test
+    public void PerftTestSpecialMoves() {
+        // "Kiwipete" position, exercises castling, en passant and promotions
+        TestMoveGeneration testMoveGen = new TestMoveGeneration();
+        Position position = new Position("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+
+        assertEquals("The number of positions generated at depth 1 is incorrect", 48, testMoveGen.MoveGenerationTest(1, position));
+        assertEquals("The number of positions generated at depth 2 is incorrect", 2039, testMoveGen.MoveGenerationTest(2, position));
+        assertEquals("The number of positions generated at depth 3 is incorrect", 97862, testMoveGen.MoveGenerationTest(3, position));
+    }
+
+    @Test
+    public void PerftTestParallelHashed() throws InterruptedException {
+        Perft perft = new Perft(2, 16);
+
+        Position kiwipete = new Position("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        assertEquals("The number of positions generated at depth 3 is incorrect", 97862, perft.count(kiwipete, 3));
+
+        // Rook and pawn endgame with en passant pins and discovered checks
+        Position endgame = new Position("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1");
+        long[] divide = perft.divide(endgame, 5);
+        assertEquals("Divide should have one count per root move", 14, divide.length);
+        assertEquals("The number of positions generated at depth 5 is incorrect", 674624, perft.count(endgame, 5));
+    }
+
+    @Test
+    public void testFen() {
+        assertEquals(Position.START_FEN, board.toFen());
+        assertEquals(new Board(Position.START_FEN).getZobristKey(), board.getZobristKey());
+
+        // Castling rights lost to moved kings and rooks, en passant and move counters survive a round trip
+        String fen = "r3k2r/p1pp1pb1/bn2pnp1/2qPN3/1pP1P3/2N2Q1p/PP1BBPPP/R3K2R b Kq c3 0 2";
+        Board loaded = new Board(fen);
+        assertEquals(fen, loaded.toFen());
+        assertEquals(Position.WHITE_KINGSIDE | Position.BLACK_QUEENSIDE, loaded.getCastlingRights());
+        assertEquals(new Position(fen).getZobristKey(), loaded.getZobristKey());
+        assertEquals("Piece lists should match the squares", 32, loaded.getAllPieces().size());
+        assertEquals(16, loaded.getBlackPieces().size());
+        assertFalse(((Pawn) loaded.findPieceByLocation(4, 2)).getFirstMove());
+        assertTrue(((Pawn) loaded.findPieceByLocation(6, 0)).getFirstMove());
+
+        // An en passant square no pawn can capture on isn't kept, the same as after playing the moves
+        board.movePiece(new Move(board.findPieceByLocation(6, 4), 4, 4));
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1", board.toFen());
+        assertEquals(board.getZobristKey(), new Board("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1").getZobristKey());
+        for (String ep : new String[] {"e", "e4", "e3x"}) {
+            try {
+                new Position("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq " + ep + " 0 1");
+                fail("Invalid en passant square " + ep);
+            } catch (IllegalArgumentException expected) {
+                // rejected
+            }
+        }
+
+        Epd epd = Epd.parse("1k1r4/pp1b1R2/3q2pp/4p3/2B5/4Q3/PPP2B2/2K5 b - - bm Qd1+; id \"BK.01\"; c0 \"a; b\";");
+        assertEquals("1k1r4/pp1b1R2/3q2pp/4p3/2B5/4Q3/PPP2B2/2K5 b - - 0 1", epd.getFen());
+        assertEquals("Qd1+", epd.getOperation("bm"));
+        assertEquals("BK.01", epd.getOperation("id"));
+        assertEquals("a; b", epd.getOperation("c0"));
+        assertEquals("1k1r4/pp1b1R2/3q2pp/4p3/2B5/4Q3/PPP2B2/2K5 b - - bm Qd1+; id \"BK.01\"; c0 \"a; b\";", epd.toString());
+        assertFalse(epd.toBoard().isWhiteToMove());
+
+        // A full FEN keeps its counters rather than reading them as an operation
+        epd = Epd.parse("4k3/8/8/8/8/8/8/4K2R w K - 37 60");
+        assertEquals("4k3/8/8/8/8/8/8/4K2R w K - 37 60", epd.getFen());
+        assertTrue(epd.getOperations().isEmpty());
+        assertEquals("bm", Epd.parse("4k3/8/8/8/8/8/8/4K2R w K - 0 1 bm Rh8+;").getOperations().keySet().iterator().next());
+    }
+
+    @Test
+    public void testEnPassant() {
+        Board loaded = new Board("8/8/8/1k6/2pP4/8/8/3K4 b - d3 0 1");
+        Piece pawn = loaded.findPieceByLocation(4, 2);
+        Piece captured = loaded.findPieceByLocation(4, 3);
+        long key = loaded.getZobristKey();
+
+        Move move = new Move(pawn, 5, 3);
+        loaded.movePiece(move);
+        assertTrue(move.isEnPassant());
+        assertNull("Pawn taken en passant should be removed", loaded.findPieceByLocation(4, 3));
+        assertTrue(loaded.getCapturedPieces().contains(captured));
+        assertEquals("8/8/8/1k6/8/3p4/8/3K4 w - - 0 2", loaded.toFen());
+
+        loaded.undoLastMove();
+        assertEquals(captured, loaded.findPieceByLocation(4, 3));
+        assertEquals(key, loaded.getZobristKey());
+
+        // "Position 3" from the perft results, which has en passant captures from depth 3
+        TestMoveGeneration testMoveGen = new TestMoveGeneration();
+        Board endgame = new Board("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1");
+        assertEquals("The number of positions generated at depth 4 is incorrect", 43238, testMoveGen.MoveGenerationTest(4, true, endgame));
+    }
+
+    @Test
+    public void testSnapshot() {
+        Pawn whitePawn = (Pawn) board.findPieceByLocation(6, 4);
+        board.movePiece(new Move(whitePawn, 4, 4));
+        Piece blackKnight = board.findPieceByLocation(0, 6);
+        board.movePiece(new Move(blackKnight, 2, 5));
+
+        Position snapshot = board.snapshot();
+        assertEquals("Snapshot should hash like the board", board.getZobristKey(), snapshot.getZobristKey());
+        assertEquals(1, snapshot.getHalfmoveClock());
+        assertEquals(2, snapshot.getFullmoveNumber());
+        assertTrue(snapshot.isWhiteToMove());
+
+        // Moves on a copy leave the snapshot (and the board) untouched
+        Position copy = new Position(snapshot);
+        copy.movePiece(copy.getAllPossibleMoves()[0]);
+        assertEquals(board.getZobristKey(), snapshot.getZobristKey());
+        assertNotEquals("Copy should have moved", snapshot.getZobristKey(), copy.getZobristKey());
+        copy.undoLastMove();
+        assertEquals(snapshot.getZobristKey(), copy.getZobristKey());
+
+        board.undoLastMove();
+        assertEquals(0, board.getHalfmoveClock());
+        assertEquals(1, board.getFullmoveNumber());
+    }
+
+    @Test
+    public void testIncrementalEvaluation() {
+        // 1. e4 d5 2. exd5, then a queen promotion
+        Position position = new Position();
+        assertEquals(PieceSquareTables.MAX_PHASE, position.getPhase());
+        position.movePiece(PackedMove.of(Position.square(6, 4), Position.square(4, 4)));
+        position.movePiece(PackedMove.of(Position.square(1, 3), Position.square(3, 3)));
+        position.movePiece(PackedMove.of(Position.square(4, 4), Position.square(3, 3), 0, PackedMove.CAPTURE));
+
+        Position expected = new Position("rnbqkbnr/ppp1pppp/8/3P4/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2");
+        assertEquals(expected.getMaterial(Position.WHITE) - 10, expected.getMaterial(Position.BLACK));
+        assertEquals(expected.getMaterial(Position.BLACK), position.getMaterial(Position.BLACK));
+        assertEquals(expected.getMidgameBonus(Position.WHITE), position.getMidgameBonus(Position.WHITE));
+        assertEquals(expected.getEndgameBonus(Position.BLACK), position.getEndgameBonus(Position.BLACK));
+        assertEquals(expected.getPawnKey(), position.getPawnKey());
+        assertEquals(new AIPlayer().evaluate(expected), new AIPlayer().evaluate(position));
+
+        for (int i = 0; i < 3; i++) {
+            position.undoLastMove();
+        }
+        assertEquals(new Position().getMaterial(Position.BLACK), position.getMaterial(Position.BLACK));
+        assertEquals(new Position().getPawnKey(), position.getPawnKey());
+
+        Position promotion = new Position("8/4P3/8/8/8/8/k7/4K3 w - - 0 1");
+        assertEquals(0, promotion.getPhase());
+        promotion.movePiece(PackedMove.of(Position.square(1, 4), Position.square(0, 4), Position.QUEEN, 0));
+        assertEquals(4, promotion.getPhase());
+        assertEquals(2090, promotion.getMaterial(Position.WHITE));
+        assertEquals(0, promotion.getPawnKey());
+    }
+
+    @Test
+    public void testMobility() {
+        AIPlayer ai = new AIPlayer();
+        Position position = new Position();
+        // Symmetric start, both sides have 8 pawn pushes and 4 knight moves
+        assertEquals(0, ai.evaluate(position));
+
+        // 1. e4 opens lines for the f1 bishop and the queen
+        position.movePiece(PackedMove.of(Position.square(6, 4), Position.square(4, 4)));
+        Position blackView = new Position("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1");
+        assertEquals(ai.evaluate(blackView), ai.evaluate(position));
+        assertTrue("White should have more room after 1. e4", ai.evaluate(position) < 0);
+    }
+
+    @Test
+    public void testTranspositionTable() {
+        TranspositionTable tt = new TranspositionTable(1);
+        long key = new Position().getZobristKey();
+        assertEquals("Unknown position should miss", TranspositionTable.EMPTY, tt.probe(key));
+
+        int move = PackedMove.of(52, 36);
+        tt.store(key, move, -150, 4, TranspositionTable.LOWER);
+        long entry = tt.probe(key);
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(-150, TranspositionTable.score(entry));
+        assertEquals(4, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+
+        // A shallower result for another position in the same bucket must not evict the deeper one
+        long other = key ^ (1L << 40);
+        tt.store(other, PackedMove.NONE, 10, 1, TranspositionTable.EXACT);
+        assertEquals(4, TranspositionTable.depth(tt.probe(key)));
+        assertEquals(1, TranspositionTable.depth(tt.probe(other)));
+        assertEquals("Other bucket entries are unaffected", TranspositionTable.EMPTY, tt.probe(key + 1));
+    }
+
+    @Test
+    public void testStaticExchange() {
+        AIPlayer ai = new AIPlayer();
+
+        // Rook takes a pawn defended by a pawn
+        Position position = new Position("4k3/8/3p4/4p3/8/8/8/4R1K1 w - - 0 1");
+        int rookTakesPawn = PackedMove.of(Position.square(7, 4), Position.square(3, 4), 0, PackedMove.CAPTURE);
+        assertEquals("Rook should be lost for a pawn", -40, ai.see(position, rookTakesPawn));
+
+        // Same capture backed up by a second rook behind the first (x-ray), black can't recapture twice
+        position = new Position("4k3/8/8/4p3/8/8/4R3/4R1K1 w - - 0 1");
+        int frontRookTakes = PackedMove.of(Position.square(6, 4), Position.square(3, 4), 0, PackedMove.CAPTURE);
+        assertEquals("Undefended pawn is won", 10, ai.see(position, frontRookTakes));
+
+        // Kiwipete has 8 captures, quiescence only generates those
+        position = new Position("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        assertEquals(8, position.getCaptures(new int[Position.MAX_MOVES]));
+
+        // In check on the last ply quiescence stops instead of generating evasions past the buffers
+        Search search = new Search(new TranspositionTable(1), new AtomicBoolean());
+        position = new Position("4k3/8/8/8/8/8/8/4R1K1 b - - 0 1");
+        assertEquals(search.evaluate(position), search.quiesce(position, 63, -100_000, 100_000));
+    }
+
+    @Test
+    public void testIterativeDeepeningTimeLimit() {
+        AIPlayer ai = new AIPlayer();
+        Move move = ai.getBestMoveIterative(board, 200);
+
+        assertNotNull("A move should be found", move);
+        assertTrue("At least one iteration should complete", ai.completedDepth >= 1);
+        // Deadline is only checked every few nodes, allow some slack
+        assertTrue("Search should stop close to its deadline", ai.totalTime < 400_000_000L);
+    }
+
+    @Test
+    public void testForkJoinSearch() {
+        AIPlayer ai = new AIPlayer(16, 2);
+        ai.setForkJoin(true);
+        Move move = ai.getBestMoveAlphaBeta(board, 4);
+
+        assertNotNull("A move should be found", move);
+        assertEquals("Every iteration should complete without a time limit", 4, ai.completedDepth);
+        assertFalse("Computer plays black", move.getPiece().isWhite());
+        assertTrue("Iterations should hit the hash table", ai.getHitRate() > 0);
+        ai.setForkJoin(false);
+    }
+
+    @Test
+    public void testPondering() throws InterruptedException {
+        AIPlayer ai = new AIPlayer();
+        ai.setThinkTime(100);
+        board.movePiece(new Move(board.findPieceByLocation(6, 4), 4, 4));
+        board.movePiece(ai.decideMove(board));
+
+        // Human thinks for longer than the computer's think time, then plays the predicted move
+        ai.startPondering(board);
+        int predicted = ai.getPonderMove();
+        assertNotEquals("Search should leave a predicted reply in the table", PackedMove.NONE, predicted);
+        Thread.sleep(150);
+        board.movePiece(toBoardMove(predicted));
+
+        Move reply = ai.decideMove(board);
+        assertNotNull(reply);
+        assertEquals(1, ai.ponderHits);
+        assertTrue("Ponder hit should answer without searching again", ai.totalTime < 50_000_000);
+
+        // A different move stops the ponder search, the computer then searches as usual
+        board.movePiece(reply);
+        ai.startPondering(board);
+        int[] moves = new Position(board, true).getAllPossibleMoves();
+        board.movePiece(toBoardMove(moves[0] != ai.getPonderMove() ? moves[0] : moves[1]));
+        assertNotNull(ai.decideMove(board));
+        assertEquals(1, ai.ponderHits);
+    }
+
+    private Move toBoardMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        return new Move(board.findPieceByLocation(Position.row(from), Position.col(from)), Position.row(to), Position.col(to));
+    }
+
+    @Test
+    public void testUciEngine() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        UciEngine engine = new UciEngine(new BufferedReader(new StringReader("")), new PrintStream(output));
+        engine.command("uci");
+        engine.command("setoption name Threads value 2");
+        engine.command("isready");
+        // Back rank mate, Rd8#
+        engine.command("position fen 6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1 moves d1e1 g8h8 e1d1 h8g8 e2e4");
+        engine.command("go depth 3");
+        engine.waitForSearch();
+
+        String[] lines = output.toString().trim().split("\\R");
+        assertEquals("uciok", lines[5]);
+        assertEquals("readyok", lines[6]);
+        assertTrue("Illegal move should be reported", lines[7].equals("info string illegal move: e2e4"));
+        assertTrue("Mate should be found", lines[8].startsWith("info depth 1 score mate 1"));
+        assertEquals("bestmove d1d8", lines[lines.length - 1]);
+
+        // An infinite search that runs out of things to do still waits for stop
+        output.reset();
+        engine.command("position fen 6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        engine.command("go infinite");
+        try {
+            Thread.sleep(300);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertFalse("No best move before stop", output.toString().contains("bestmove"));
+        engine.command("stop");
+        assertTrue(output.toString().trim().endsWith("bestmove a1a8"));
+
+        // A clock that can't be read falls back to a fixed think time instead of searching until stop
+        for (String go : new String[] {"go wtime abc btime 1000", "go movetime -5"}) {
+            output.reset();
+            engine.command(go);
+            engine.waitForSearch();
+            String reply = output.toString();
+            assertTrue(reply.contains("info string invalid go command"));
+            assertTrue("A move should be sent without stop", reply.trim().endsWith("bestmove a1a8"));
+        }
+    }
+
+    @Test
+    public void testSelfPlay() throws InterruptedException {
+        assertEquals(0, SelfPlay.elo(0.5), 1e-9);
+        assertEquals(191, SelfPlay.elo(0.75), 1.0);
+        assertTrue("More games should narrow the error", SelfPlay.eloMargin(30, 40, 30) < SelfPlay.eloMargin(3, 4, 3));
+        assertEquals(3, SelfPlay.percentile(new long[]{1, 2, 3, 4}, 75));
+        assertTrue(SelfPlay.insufficientMaterial(new Position("8/8/4k3/8/8/3NK3/8/8 w - - 0 1")));
+        assertFalse(SelfPlay.insufficientMaterial(new Position("8/8/4k3/8/8/3BK3/7P/8 w - - 0 1")));
+
+        // Back rank mate in one, whoever has white mates, once for each engine
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SelfPlay match = new SelfPlay("d2", "d1", 2, new PrintStream(output));
+        match.play(List.of("6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - id \"mate\";"), 2);
+
+        assertEquals(1, match.getWins());
+        assertEquals(1, match.getLosses());
+        assertEquals(1, match.getLatencies(0).length);
+        String csv = output.toString();
+        assertTrue(csv.contains(",A,B,1-0,checkmate,1,d1d8"));
+        assertTrue(csv.contains(",B,A,1-0,checkmate,1,d1d8"));
+        assertTrue("Quotes in the opening should be escaped", csv.contains("id \"\"mate\"\";"));
+    }
+
+    @Test
+    public void testSan() {
+        Position kiwipete = new Position("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        assertEquals("O-O", sanOf(kiwipete, "e1g1"));
+        assertEquals("O-O-O", sanOf(kiwipete, "e1c1"));
+        assertEquals("Nxd7", sanOf(kiwipete, "e5d7"));
+        assertEquals("gxh3", sanOf(kiwipete, "g2h3"));
+        assertEquals("Nbd2", sanOf(new Position("4k3/8/8/8/8/5N2/8/1N2K3 w - - 0 1"), "b1d2"));
+        assertEquals("R1a3", sanOf(new Position("4k3/8/8/R7/8/8/8/R3K3 w - - 0 1"), "a1a3"));
+        assertEquals("a8=Q+", sanOf(new Position("4k3/P7/8/8/8/8/8/4K3 w - - 0 1"), "a7a8q"));
+        assertEquals("Ra8#", sanOf(new Position("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"), "a1a8"));
+
+        // Every legal move reads back as itself
+        for (int move : kiwipete.getAllPossibleMoves()) {
+            assertEquals(move, San.parse(kiwipete, San.toSan(kiwipete, move)));
+        }
+        assertEquals("e1g1", PackedMove.toString(San.parse(kiwipete, "0-0")));
+        assertEquals("a7a8q", PackedMove.toString(San.parse(new Position("4k3/P7/8/8/8/8/8/4K3 w - - 0 1"), "a8Q!?")));
+        try {
+            San.parse(new Position("4k3/8/8/8/8/5N2/8/1N2K3 w - - 0 1"), "Nd2");
+            fail("Two knights can go to d2");
+        } catch (IllegalArgumentException expected) {
+            // ambiguous
+        }
+    }
+
+    @Test
+    public void testOpeningBook() throws IOException {
+        BookBuilder builder = new BookBuilder(4);
+        try (PgnReader reader = new PgnReader(new StringReader(
+                "1. e4 e5 2. Nf3 1-0\n\n1. e4 c5 0-1\n\n1. d4 d5 1/2-1/2\n\n1. c4 *"))) {
+            for (PgnGame game = reader.next(); game != null; game = reader.next()) {
+                builder.add(game);
+            }
+        }
+        Path file = Files.createTempFile("book", ".bin");
+        file.toFile().deleteOnExit();
+        assertEquals("e4, d4, c5, d5, Nf3 (e5 only lost and c4 has no result)", 5, builder.write(file));
+
+        OpeningBook book = new OpeningBook(file);
+        int[] moves = new int[8];
+        int[] weights = new int[8];
+        assertEquals(2, book.getMoves(new Position(), moves, weights));
+        assertEquals("e2e4", PackedMove.toString(moves[0]));
+        assertEquals(2, weights[0]);
+        assertEquals("d2d4", PackedMove.toString(moves[1]));
+        assertEquals(1, weights[1]);
+        assertEquals(PackedMove.NONE, book.probe(new Position("4k3/8/8/8/8/8/8/4K3 w - - 0 1")));
+
+        // Castling is stored as the king taking its rook
+        Position kiwipete = new Position("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        assertEquals(7 | 4 << 6, OpeningBook.encode(San.parse(kiwipete, "O-O")));
+
+        // The computer plays the only book reply without searching
+        AIPlayer ai = new AIPlayer();
+        ai.setBook(book);
+        board.movePiece(new Move(board.findPieceByLocation(6, 4), 4, 4));
+        Move reply = ai.decideMove(board);
+        assertEquals(board.findPieceByLocation(1, 2), reply.getPiece());
+        assertEquals(3, reply.getTargetRow());
+        assertEquals(0, ai.totalNodes);
+    }
+
+    private String sanOf(Position position, String move) {
+        for (int legal : position.getAllPossibleMoves()) {
+            if (PackedMove.toString(legal).equals(move)) {
+                return San.toSan(position, legal);
+            }
+        }
+        throw new AssertionError("Not legal: " + move);
+    }
+
+    @Test
+    public void testPgn() throws IOException {
+        // Game written as it's played, starting with black to move
+        Position position = new Position("4k3/8/8/8/8/8/5PPP/R5K1 b - - 0 40");
+        PgnGame game = new PgnGame(position.toFen());
+        game.setTag("White", "Tester, A.");
+        for (String san : new String[]{"Kd7", "Ra7+", "Kc6", "Ra6+"}) {
+            int move = San.parse(position, san);
+            game.addMove(position, move);
+            position.movePiece(move);
+        }
+        game.setResult(PgnGame.UNFINISHED);
+
+        StringWriter text = new StringWriter();
+        try (PgnWriter writer = new PgnWriter(text)) {
+            writer.write(game);
+            writer.write(new PgnGame());
+        }
+        assertTrue(text.toString().contains("[FEN \"4k3/8/8/8/8/8/5PPP/R5K1 b - - 0 40\"]"));
+        assertTrue(text.toString().contains("\n40... Kd7 41. Ra7+ Kc6 42. Ra6+ *\n"));
+
+        // Comments, variations and annotations are skipped, games are read one at a time
+        String archive = text + "[Event \"Annotated\"]\n[Result \"1-0\"]\n\n"
+                + "1. e4 {best by test} e5 (1... c5 2. Nf3 (2. c3) d6) 2. Nf3 $1 Nc6 3.Bb5 a6!? ; Ruy Lopez\n"
+                + "4. Ba4 1-0\n\n1. d4 d5";
+        try (PgnReader reader = new PgnReader(new StringReader(archive))) {
+            PgnGame first = reader.next();
+            assertEquals("Tester, A.", first.getTag("White"));
+            assertEquals(List.of("Kd7", "Ra7+", "Kc6", "Ra6+"), first.getMoves());
+            assertEquals(position.getZobristKey(), first.getPosition().getZobristKey());
+
+            assertTrue(reader.next().getMoves().isEmpty());
+
+            PgnGame annotated = reader.next();
+            assertEquals("Annotated", annotated.getTag("Event"));
+            assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5", "a6", "Ba4"), annotated.getMoves());
+            assertEquals(7, annotated.replay().length);
+
+            PgnGame unfinished = reader.next();
+            assertEquals(List.of("d4", "d5"), unfinished.getMoves());
+            assertEquals(PgnGame.UNFINISHED, unfinished.getResult());
+            assertNull(reader.next());
+        }
+    }
+
     @Test
     public void testMinMaxSearchPerformance() {
         int depth = 3;
@@ -166,7 +688,8 @@ public class TestGameBoard {
         System.out.println("Results for minimax search:");
         System.out.println(minimaxNodes + " nodes searched in " + minimaxTime);
         System.out.println("Results for alpha-beta search:");
-        System.out.println(negamaxNodes + " nodes searched in " + negamaxTime);
+        System.out.println(negamaxNodes + " nodes searched in " + negamaxTime
+                + " (hash hit rate " + String.format("%.1f", ai2.getHitRate()) + "%)");
 
         assertTrue("Minimax search takes longest", minimaxTime >= negamaxTime);
         assertTrue("Minimax searches more nodes", minimaxNodes >= negamaxNodes);
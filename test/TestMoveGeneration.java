@@ -1,6 +1,7 @@
 import model.Board;
 import model.Move;
 import model.Piece;
+import model.Position;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -33,4 +34,27 @@ public class TestMoveGeneration {
 
         return numPositions;
     }
+
+    // Same count on the bitboard position, where side to move is part of the position
+    long MoveGenerationTest (int depth, Position position) {
+        return MoveGenerationTest(depth, position, new int[depth + 1][Position.MAX_MOVES]);
+    }
+
+    // Move lists are preallocated per depth so the count itself doesn't allocate
+    private long MoveGenerationTest (int depth, Position position, int[][] buffers) {
+        if (depth == 0) {
+            return 1;
+        }
+
+        int[] moves = buffers[depth];
+        int count = position.getAllPossibleMoves(moves);
+        long numPositions = 0;
+        for (int i = 0; i < count; i++) {
+            position.movePiece(moves[i]);
+            numPositions += MoveGenerationTest(depth - 1, position, buffers);
+            position.undoLastMove();
+        }
+
+        return numPositions;
+    }
 }